@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.rmen.rhymer;
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link MemoryRhymer#buildIndex(PhoneTable, ForkJoinPool)} takes to index the words of the
+ * CMU dictionary, which are already parsed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildIndexBenchmark {
+
+    /**
+     * "serial" builds the index on the benchmark thread, "parallel" on a pool with one thread per core.
+     */
+    @Param({"serial", "parallel"})
+    public String mode;
+
+    private MemoryRhymer rhymer;
+    private PhoneTable phoneTable;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException {
+        MemoryRhymer dictionary = (MemoryRhymer) CmuDictionary.loadRhymer();
+        phoneTable = dictionary.getPhoneTable();
+        rhymer = new MemoryRhymer();
+        for (String word : dictionary.getWords()) {
+            List<WordVariant> wordVariants = dictionary.getWordVariants(word);
+            for (WordVariant wordVariant : wordVariants) rhymer.addWordVariant(word, wordVariant);
+        }
+        if ("parallel".equals(mode)) pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Benchmark
+    public MemoryRhymer buildIndex() {
+        rhymer.buildIndex(phoneTable, pool);
+        return rhymer;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.rmen.rhymer;
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * Prints the retained heap of the rhymers of the CMU dictionary, and of each of their syllable indexes.
+ * <p/>
+ * The retained heap of a syllable index is the difference between a rhymer with only this index, and a rhymer
+ * without any index: the memory which is freed if the index isn't used.
+ */
+public class HeapFootprint {
+
+    private HeapFootprint() {
+        // Prevent instantiation of a utility class
+    }
+
+    public static void main(String[] args) throws IOException {
+        MemoryRhymer noIndexRhymer = (MemoryRhymer) CmuDictionary.loadRhymer(EnumSet.noneOf(RhymeType.class));
+        long wordsSize = getRetainedHeap(noIndexRhymer);
+        print("Words and word variants", wordsSize);
+        for (RhymeType rhymeType : RhymeType.values()) {
+            MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(EnumSet.of(rhymeType));
+            buildIndexes(rhymer);
+            print(rhymeType + " index", getRetainedHeap(rhymer) - wordsSize);
+        }
+
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        print("MemoryRhymer", getRetainedHeap(rhymer));
+        print("MappedRhymer, prebuilt", getRetainedHeap(CmuDictionary.loadPrebuiltRhymer()));
+
+        File indexFile = File.createTempFile("rhymer", ".index");
+        try {
+            OutputStream os = new FileOutputStream(indexFile);
+            try {
+                rhymer.writeIndex(os);
+            } finally {
+                os.close();
+            }
+            // The mapped file itself isn't in the heap.
+            print("MappedRhymer", getRetainedHeap(new MappedRhymer(indexFile)));
+            print("MappedRhymer index file", indexFile.length());
+        } finally {
+            if (!indexFile.delete()) indexFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Build the syllable indexes of a rhymer which builds them on first use.
+     */
+    private static void buildIndexes(MemoryRhymer rhymer) throws IOException {
+        rhymer.writeIndex(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    private static long getRetainedHeap(Object object) {
+        return GraphLayout.parseInstance(object).totalSize();
+    }
+
+    private static void print(String label, long bytes) {
+        System.out.println(String.format(Locale.US, "%-30s %,15d bytes", label, bytes));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.rmen.rhymer;
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of {@link Rhymer#getRhymingWords(String, int)} and
+ * {@link Rhymer#getRhymingWords(java.util.Collection, int)}.
+ * <p/>
+ * The word mix has common words, words with huge rhyme groups like "puppy" (any word ending with an "ee" sound),
+ * a word which isn't in the dictionary, and a sample of the whole dictionary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RhymerBenchmark {
+
+    private static final List<String> COMMON_WORDS = Arrays.asList(
+            "love", "heart", "time", "day", "night", "light", "fire", "rain", "dream", "home",
+            "tuesday", "telephone", "recuperate", "orange", "celebrate", "notaword");
+    private static final List<String> PATHOLOGICAL_WORDS = Arrays.asList(
+            "puppy", "happy", "money", "city", "me", "station", "nation");
+    private static final int SAMPLE_WORD_STEP = 97;
+    private static final RhymeScorer SHORT_RHYMES_FIRST = new RhymeScorer() {
+        @Override
+        public double getScore(String word, String rhyme) {
+            return -rhyme.length();
+        }
+    };
+    private static final int CACHE_SIZE = 10000;
+    private static final int PAGE_OFFSET = 1000;
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * "memory" is the rhymer loaded from the dictionary, "mapped" is a {@link MappedRhymer} of its index,
+     * "cached" is a {@link CachingRhymer} in front of the rhymer loaded from the dictionary, big enough for the
+     * whole word mix.
+     */
+    @Param({"memory", "mapped", "cached"})
+    public String implementation;
+
+    /**
+     * The maximum number of results per rhyme type, -1 for all the results.
+     */
+    @Param({"-1", "20"})
+    public int maxResults;
+
+    private Rhymer rhymer;
+    private File indexFile;
+    private String[] wordMix;
+    private List<String> wordMixList;
+    private int wordIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        MemoryRhymer memoryRhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        if ("mapped".equals(implementation)) {
+            indexFile = File.createTempFile("rhymer", ".index");
+            OutputStream os = new FileOutputStream(indexFile);
+            try {
+                memoryRhymer.writeIndex(os);
+            } finally {
+                os.close();
+            }
+            rhymer = new MappedRhymer(indexFile);
+        } else if ("cached".equals(implementation)) {
+            rhymer = new CachingRhymer(memoryRhymer, CACHE_SIZE);
+        } else {
+            rhymer = memoryRhymer;
+        }
+
+        List<String> words = new ArrayList<>();
+        words.addAll(COMMON_WORDS);
+        words.addAll(PATHOLOGICAL_WORDS);
+        int i = 0;
+        for (String word : new TreeSet<>(memoryRhymer.getWords())) {
+            if (i++ % SAMPLE_WORD_STEP == 0) words.add(word);
+        }
+        wordMix = words.toArray(new String[words.size()]);
+        wordMixList = Arrays.asList(wordMix);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (indexFile != null && !indexFile.delete()) indexFile.deleteOnExit();
+    }
+
+    /**
+     * Find the rhymes of the next word of the word mix.
+     */
+    @Benchmark
+    public List<RhymeResult> getRhymingWords() {
+        String word = wordMix[wordIndex];
+        wordIndex = wordIndex + 1 == wordMix.length ? 0 : wordIndex + 1;
+        return rhymer.getRhymingWords(word, maxResults);
+    }
+
+    /**
+     * The worst case: "puppy" rhymes with thousands of words.
+     */
+    @Benchmark
+    public List<RhymeResult> getRhymingWordsPuppy() {
+        return rhymer.getRhymingWords("puppy", maxResults);
+    }
+
+    /**
+     * A page of the rhymes of "puppy", far from the first rhymes.
+     */
+    @Benchmark
+    public List<RhymeResult> getRhymingWordsPuppyPage() {
+        return rhymer.getRhymingWords("puppy", PAGE_OFFSET, PAGE_SIZE);
+    }
+
+    /**
+     * The best rhymes of "puppy", with a scorer which prefers short rhymes.
+     */
+    @Benchmark
+    public List<RhymeResult> getRhymingWordsPuppyScored() {
+        return rhymer.getRhymingWords("puppy", maxResults, SHORT_RHYMES_FIRST);
+    }
+
+    /**
+     * Find the rhymes of the whole word mix in one batch query.
+     */
+    @Benchmark
+    public Map<String, List<RhymeResult>> getRhymingWordsBatch() {
+        return rhymer.getRhymingWords(wordMixList, maxResults);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer.cmu;
+
+import ca.rmen.rhymer.PhoneTable;
+import ca.rmen.rhymer.PhoneType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the pronunciations of the CMU dictionary are parsed, in phones per second
+ * (the "phones" secondary result).
+ * <p/>
+ * The "previousParser" benchmark runs a copy of the previous parser, which built the rhyming keys as Strings: a
+ * String for each phone, a regular expression to remove the stress, a list of the syllables and a concatenation
+ * for each phone.  It gives the "before" number to compare with.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SyllableParserBenchmark {
+
+    private static final String WORDS_FILE = "/dictionary_files/cmudict-0.7b";
+    private static final String PHONES_FILE = "/dictionary_files/cmudict-0.7b.phones";
+
+    private SyllableParser syllableParser;
+    private PreviousSyllableParser previousSyllableParser;
+    private String[] lines;
+    private int[] pronunciationStarts;
+    private int[] phoneCounts;
+    private int lineIndex;
+
+    /**
+     * Counts the parsed phones. JMH reports the count per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class PhoneCounter {
+        public long phones;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            phones = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Map<String, PhoneType> phones = CmuDictionaryReader.readPhones(getResource(PHONES_FILE));
+        syllableParser = new SyllableParser(new PhoneTable(phones));
+        previousSyllableParser = new PreviousSyllableParser(phones);
+        List<String> pronunciationLines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(getResource(WORDS_FILE)));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.isEmpty() && !line.startsWith(";;;")) pronunciationLines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        lines = pronunciationLines.toArray(new String[pronunciationLines.size()]);
+        pronunciationStarts = new int[lines.length];
+        phoneCounts = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            pronunciationStarts[i] = lines[i].indexOf("  ") + 2;
+            phoneCounts[i] = lines[i].substring(pronunciationStarts[i]).split(" ").length;
+        }
+    }
+
+    /**
+     * Parse the next pronunciation of the dictionary.
+     */
+    @Benchmark
+    public Object parseWordVariant(PhoneCounter counter) {
+        int i = nextLine();
+        counter.phones += phoneCounts[i];
+        return syllableParser.parseWordVariant(0, lines[i], pronunciationStarts[i], lines[i].length());
+    }
+
+    /**
+     * Parse the next pronunciation of the dictionary into the keys of a word variant, like the previous parser did.
+     */
+    @Benchmark
+    public String[] previousParser(PhoneCounter counter) {
+        int i = nextLine();
+        counter.phones += phoneCounts[i];
+        String[] phones = lines[i].substring(pronunciationStarts[i]).split(" ");
+        String[] syllables = previousSyllableParser.extractRhymingSyllables(phones);
+        return new String[]{
+                previousSyllableParser.extractStressRhymingSyllables(phones),
+                concatenateLastSyllables(syllables, 1),
+                concatenateLastSyllables(syllables, 2),
+                concatenateLastSyllables(syllables, 3)};
+    }
+
+    private int nextLine() {
+        int i = lineIndex;
+        lineIndex = i + 1 == lines.length ? 0 : i + 1;
+        return i;
+    }
+
+    /**
+     * The previous parser of the syllables, which returned the rhyming keys as Strings.
+     */
+    private static class PreviousSyllableParser {
+        private final Map<String, PhoneType> symbolPhoneMap;
+
+        PreviousSyllableParser(Map<String, PhoneType> symbolPhoneMap) {
+            this.symbolPhoneMap = symbolPhoneMap;
+        }
+
+        String[] extractRhymingSyllables(String[] symbols) {
+            List<String> syllables = new ArrayList<>();
+
+            String currentSyllable = "";
+            for (String symbol : symbols) {
+                String symbolRoot = symbol.replaceAll("[0-9]$", "");
+                PhoneType phoneType = symbolPhoneMap.get(symbolRoot);
+                if (phoneType == PhoneType.VOWEL) {
+                    if (!currentSyllable.isEmpty()) {
+                        syllables.add(currentSyllable);
+                        currentSyllable = "";
+                    }
+                } else if (currentSyllable.isEmpty()) {
+                    continue;
+                }
+                currentSyllable = currentSyllable + symbolRoot;
+            }
+            if (!currentSyllable.isEmpty()) syllables.add(currentSyllable);
+            return syllables.toArray(new String[syllables.size()]);
+        }
+
+        String extractStressRhymingSyllables(String[] symbols) {
+            String result = "";
+            for (int i = symbols.length - 1; i >= 0; i--) {
+                String symbolRoot = symbols[i].replaceAll("[0-9]$", "");
+                result = symbolRoot + result;
+                if (symbols[i].endsWith("1")) {
+                    break;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The previous concatenation of the last syllables of a word, from the previous dictionary reader.
+     */
+    private static String concatenateLastSyllables(String[] syllables, int n) {
+        if (syllables.length < n) return null;
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = syllables.length - n; i < syllables.length; i++) {
+            builder.append(syllables[i]);
+        }
+        return builder.toString();
+    }
+
+    private static InputStream getResource(String path) throws IOException {
+        InputStream is = SyllableParserBenchmark.class.getResourceAsStream(path);
+        if (is == null) throw new IOException("Missing resource " + path);
+        return is;
+    }
+}
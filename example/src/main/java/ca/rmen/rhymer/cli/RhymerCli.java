@@ -19,14 +19,25 @@
 
 package ca.rmen.rhymer.cli;
 
+import ca.rmen.rhymer.LineRhymeResult;
 import ca.rmen.rhymer.MemoryRhymer;
+import ca.rmen.rhymer.PhoneTable;
 import ca.rmen.rhymer.RhymeResult;
+import ca.rmen.rhymer.RhymeKey;
+import ca.rmen.rhymer.RhymeSchemeAnalyzer;
 import ca.rmen.rhymer.Rhymer;
 import ca.rmen.rhymer.WordVariant;
 import ca.rmen.rhymer.cmu.CmuDictionary;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -41,6 +52,8 @@ public class RhymerCli {
         System.out.println("Usages:");
         System.out.println("query <word>");
         System.out.println("exportdb </path/to/db/file>");
+        System.out.println("exportresults </path/to/results/file> [max results]");
+        System.out.println("scheme </path/to/text/file>");
         System.exit(-1);
     }
 
@@ -57,6 +70,15 @@ public class RhymerCli {
             if (args.length != 2) usage();
             exportDb(new File(args[1]));
 
+        } else if ("exportresults".equals(command)) {
+            if (args.length > 3) usage();
+            int maxResults = args.length == 3 ? Integer.parseInt(args[2]) : -1;
+            exportResults(new File(args[1]), maxResults);
+
+        } else if ("scheme".equals(command)) {
+            if (args.length != 2) usage();
+            printRhymeScheme(new File(args[1]));
+
         } else {
             usage();
         }
@@ -92,6 +114,7 @@ public class RhymerCli {
         createTableStatement.close();
         PreparedStatement insertStatement = connection.prepareStatement("INSERT INTO word_variants (word, variant_number, stress_syllables, last_syllable, last_two_syllables, last_three_syllables) VALUES (?, ?, ?, ?, ?, ?)");
         MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        PhoneTable phoneTable = rhymer.getPhoneTable();
         Set<String> words = rhymer.getWords();
         int wordIndex = 0;
         int row = 0;
@@ -101,10 +124,10 @@ public class RhymerCli {
                 int column = 1;
                 insertStatement.setString(column++, word);
                 insertStatement.setInt(column++, wordVariant.variantNumber);
-                insertStatement.setString(column++, wordVariant.lastStressRhymingSyllables);
-                insertStatement.setString(column++, wordVariant.lastRhymingSyllable);
-                insertStatement.setString(column++, wordVariant.lastTwoRhymingSyllables);
-                insertStatement.setString(column++, wordVariant.lastThreeRhymingSyllables);
+                insertStatement.setString(column++, toString(phoneTable, wordVariant.lastStressRhymingSyllables));
+                insertStatement.setString(column++, toString(phoneTable, wordVariant.lastRhymingSyllable));
+                insertStatement.setString(column++, toString(phoneTable, wordVariant.lastTwoRhymingSyllables));
+                insertStatement.setString(column++, toString(phoneTable, wordVariant.lastThreeRhymingSyllables));
                 insertStatement.addBatch();
                 row++;
                 if (row % batch_insert_size == 0) {
@@ -118,4 +141,39 @@ public class RhymerCli {
         insertStatement.executeBatch();
         insertStatement.close();
     }
+
+    /**
+     * Write the rhymes of every word variant, for {@link ca.rmen.rhymer.PrecomputedRhymer}.
+     */
+    private static void exportResults(File resultsFile, int maxResults) throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        long start = System.currentTimeMillis();
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(resultsFile));
+        try {
+            rhymer.writeResults(os, maxResults);
+        } finally {
+            os.close();
+        }
+        System.out.println("Wrote " + resultsFile.length() + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Print the rhyme scheme of a text file, reading it one line at a time.
+     */
+    private static void printRhymeScheme(File textFile) throws IOException {
+        RhymeSchemeAnalyzer analyzer = new RhymeSchemeAnalyzer(CmuDictionary.loadRhymer());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(textFile), Charset.forName("UTF-8")));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                LineRhymeResult result = analyzer.addLine(line);
+                System.out.println((result.label == null ? "" : result.label) + "	" + line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String toString(PhoneTable phoneTable, RhymeKey key) {
+        return key == null ? null : phoneTable.toString(key);
+    }
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.nio.IntBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Rhymer which keeps the results of the most recently used queries of another Rhymer.
+ * <p/>
+ * Only the results of {@link #getRhymingWords(String, int)} are cached.  The cache is keyed on the lower-case word
+ * and the maximum number of results.  When the cache is full, the least recently used results are evicted.
+ * <p/>
+ * The other queries are forwarded to the cached rhymer, so they are answered the way it answers them: for example,
+ * the pages of rhymes of a {@link PrecomputedRhymer} are read from its precomputed rhymes.  The pronunciation guesser
+ * is the one of the cached rhymer.
+ * <p/>
+ * The cache is split into segments, each with its own lock, so the rhymer may be queried from multiple threads.
+ * The cached results are shared between queries: callers must not modify the arrays of the returned
+ * RhymeResults.
+ */
+public class CachingRhymer extends Rhymer {
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Rhymer rhymer;
+    private final Segment[] segments;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param rhymer  the rhymer whose results we cache.
+     * @param maxSize the maximum number of queries whose results are kept.
+     */
+    public CachingRhymer(Rhymer rhymer, int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        this.rhymer = rhymer;
+        segments = new Segment[Math.min(MAX_SEGMENTS, maxSize)];
+        for (int i = 0; i < segments.length; i++) {
+            int segmentSize = maxSize / segments.length + (i < maxSize % segments.length ? 1 : 0);
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @return the results of the query, from the cache if the same query was done recently.
+     * The returned list can't be modified.
+     */
+    @Override
+    public List<RhymeResult> getRhymingWords(String word, int maxResults) {
+        RhymerListener listener = getListener();
+        if (listener == null) return getCachedRhymingWords(word, maxResults);
+        long start = System.nanoTime();
+        List<RhymeResult> results = getCachedRhymingWords(word, maxResults);
+        listener.onQuery(word, System.nanoTime() - start);
+        return results;
+    }
+
+    private List<RhymeResult> getCachedRhymingWords(String word, int maxResults) {
+        Key key = new Key(word.toLowerCase(Locale.US), maxResults);
+        Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % segments.length];
+        List<RhymeResult> results = segment.get(key);
+        if (results != null) {
+            hitCount.incrementAndGet();
+            return results;
+        }
+        missCount.incrementAndGet();
+        // Other threads may find the rhymes of the same word at the same time: they'll get equal results.
+        results = Collections.unmodifiableList(rhymer.getRhymingWords(key.word, maxResults));
+        segment.put(key, results);
+        return results;
+    }
+
+    @Override
+    List<RhymeResult> findRhymingWords(String lookupWord, int offset, int limit) {
+        return rhymer.findRhymingWords(lookupWord, offset, limit);
+    }
+
+    @Override
+    public List<RhymeResult> getRhymingWords(String word, int maxResults, RhymeScorer scorer) {
+        RhymerListener listener = getListener();
+        if (listener == null) return rhymer.getRhymingWords(word, maxResults, scorer);
+        long start = System.nanoTime();
+        List<RhymeResult> results = rhymer.getRhymingWords(word, maxResults, scorer);
+        listener.onQuery(word, System.nanoTime() - start);
+        return results;
+    }
+
+    @Override
+    public Map<String, List<RhymeResult>> getRhymingWords(Collection<String> words, int maxResults) {
+        RhymerListener listener = getListener();
+        if (listener == null) return rhymer.getRhymingWords(words, maxResults);
+        long start = System.nanoTime();
+        Map<String, List<RhymeResult>> results = rhymer.getRhymingWords(words, maxResults);
+        listener.onQuery(null, System.nanoTime() - start);
+        return results;
+    }
+
+    @Override
+    public Map<String, List<RhymeResult>> getRhymingWords(Collection<String> words, int maxResults, Executor executor)
+            throws InterruptedException {
+        RhymerListener listener = getListener();
+        if (listener == null) return rhymer.getRhymingWords(words, maxResults, executor);
+        long start = System.nanoTime();
+        Map<String, List<RhymeResult>> results = rhymer.getRhymingWords(words, maxResults, executor);
+        listener.onQuery(null, System.nanoTime() - start);
+        return results;
+    }
+
+    @Override
+    public List<RhymeCursor> getRhymeCursors(String word, RhymeType rhymeType) {
+        return rhymer.getRhymeCursors(word, rhymeType);
+    }
+
+    @Override
+    public RhymeType doRhyme(String word1, String word2) {
+        RhymerListener listener = getListener();
+        if (listener == null) return rhymer.doRhyme(word1, word2);
+        long start = System.nanoTime();
+        RhymeType result = rhymer.doRhyme(word1, word2);
+        listener.onQuery(word1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public RhymeType[] doRhyme(List<String> words1, List<String> words2) {
+        RhymerListener listener = getListener();
+        if (listener == null) return rhymer.doRhyme(words1, words2);
+        long start = System.nanoTime();
+        RhymeType[] result = rhymer.doRhyme(words1, words2);
+        listener.onQuery(null, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Set the pronunciation guesser of the cached rhymer.  The cache is cleared, because the rhymes of the words
+     * which aren't in the dictionary depend on the guesser.
+     */
+    @Override
+    public void setPronunciationGuesser(PronunciationGuesser pronunciationGuesser) {
+        rhymer.setPronunciationGuesser(pronunciationGuesser);
+        clear();
+    }
+
+    @Override
+    public PronunciationGuesser getPronunciationGuesser() {
+        return rhymer.getPronunciationGuesser();
+    }
+
+    @Override
+    List<WordVariant> lookUpWordVariants(String lookupWord) {
+        return rhymer.lookUpWordVariants(lookupWord);
+    }
+
+    /**
+     * @return the number of queries which were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of queries which weren't in the cache, and were answered by the cached rhymer.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of results which were removed from the cache because it was full.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return the number of queries whose results are currently in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return size;
+    }
+
+    /**
+     * Remove all the results from the cache.  The counters are not reset.
+     */
+    public void clear() {
+        for (Segment segment : segments) segment.clear();
+    }
+
+    @Override
+    protected List<WordVariant> getWordVariants(String word) {
+        return rhymer.getWordVariants(word);
+    }
+
+    @Override
+    protected int getWordId(String word) {
+        return rhymer.getWordId(word);
+    }
+
+    @Override
+    protected String getWord(int wordId) {
+        return rhymer.getWord(wordId);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastStressSyllable(RhymeKey lastStressSyllable) {
+        return rhymer.getWordsWithLastStressSyllable(lastStressSyllable);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastSyllable(RhymeKey lastSyllable) {
+        return rhymer.getWordsWithLastSyllable(lastSyllable);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastTwoSyllables(RhymeKey lastTwoSyllables) {
+        return rhymer.getWordsWithLastTwoSyllables(lastTwoSyllables);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastThreeSyllables(RhymeKey lastThreeSyllables) {
+        return rhymer.getWordsWithLastThreeSyllables(lastThreeSyllables);
+    }
+
+    private static final class Key {
+        private final String word;
+        private final int maxResults;
+
+        Key(String word, int maxResults) {
+            this.word = word;
+            this.maxResults = maxResults;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * word.hashCode() + maxResults;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return maxResults == other.maxResults && word.equals(other.word);
+        }
+    }
+
+    /**
+     * A part of the cache, in least recently used order.
+     */
+    private class Segment {
+        private final Map<Key, List<RhymeResult>> results;
+
+        Segment(final int maxSize) {
+            results = new LinkedHashMap<Key, List<RhymeResult>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, List<RhymeResult>> eldest) {
+                    if (size() <= maxSize) return false;
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+            };
+        }
+
+        synchronized List<RhymeResult> get(Key key) {
+            return results.get(key);
+        }
+
+        synchronized void put(Key key, List<RhymeResult> value) {
+            results.put(key, value);
+        }
+
+        synchronized int size() {
+            return results.size();
+        }
+
+        synchronized void clear() {
+            results.clear();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the words which end with given phones, for any number of phones.
+ * <p/>
+ * This is a trie of the reversed pronunciations of the word variants, flattened into an array: the pronunciations
+ * are sorted by their reversed phones, so the pronunciations below each node of the trie, which share their last
+ * phones, are a contiguous range of the array.
+ */
+final class EndingIndex {
+    private final int wordCount;
+    // The word id and pronunciation of each word variant, sorted by the reversed phones of the pronunciations.
+    private final int[] wordIds;
+    private final byte[][] pronunciations;
+
+    EndingIndex(String[] wordTable, Map<String, List<WordVariant>> words) {
+        wordCount = wordTable.length;
+        List<Entry> entries = new ArrayList<>(wordTable.length);
+        for (int wordId = 0; wordId < wordTable.length; wordId++) {
+            for (WordVariant wordVariant : words.get(wordTable[wordId])) {
+                byte[] pronunciation = wordVariant.getPronunciation();
+                if (pronunciation != null) entries.add(new Entry(wordId, pronunciation));
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                byte[] pronunciation2 = entry2.pronunciation;
+                int comparison = compareEnding(entry1.pronunciation, pronunciation2, pronunciation2.length);
+                if (comparison == 0) comparison = entry1.pronunciation.length - pronunciation2.length;
+                if (comparison == 0) comparison = entry1.wordId - entry2.wordId;
+                return comparison;
+            }
+        });
+        wordIds = new int[entries.size()];
+        pronunciations = new byte[entries.size()][];
+        for (int i = 0; i < wordIds.length; i++) {
+            wordIds[i] = entries.get(i).wordId;
+            pronunciations[i] = entries.get(i).pronunciation;
+        }
+    }
+
+    /**
+     * @param pronunciation the phones of a word variant.
+     * @param phoneCount    the number of phones, at the end of the pronunciation, which the words must have.
+     * @param wordId        the id of a word to leave out of the result: the word we're finding rhymes for.
+     * @param limit         return at most this many word ids. For no limit, pass -1.
+     * @return the sorted ids of the words ending with the last phoneCount phones of the given pronunciation.
+     */
+    int[] getWordIds(byte[] pronunciation, int phoneCount, int wordId, int limit) {
+        int from = find(pronunciation, phoneCount, false);
+        int to = find(pronunciation, phoneCount, true);
+        return getWordIds(Collections.singletonList(new int[]{from, to}), wordId, limit);
+    }
+
+    /**
+     * @return the largest number of phones, at the end of the given pronunciation, which another word than the given
+     * one also ends with, or 0 if no other word has the last phone of the pronunciation.
+     */
+    int getLongestSharedEnding(byte[] pronunciation, int wordId) {
+        // The ranges of the shorter endings contain the ranges of the longer ones: we stop at the first range which
+        // has another word.
+        for (int phoneCount = pronunciation.length; phoneCount > 0; phoneCount--) {
+            int to = find(pronunciation, phoneCount, true);
+            for (int i = find(pronunciation, phoneCount, false); i < to; i++) {
+                if (wordIds[i] != wordId) return phoneCount;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param pattern     phone codes, or phone types stored as -1 - their ordinal, which match any phone of the type.
+     * @param phoneTable  the phones of the codes.
+     * @param limit       return at most this many word ids. For no limit, pass -1.
+     * @return the sorted ids of the words ending with phones matching the pattern.
+     */
+    int[] getWordIds(byte[] pattern, PhoneTable phoneTable, int limit) {
+        // Each wildcard is a branch of the trie for each phone of its type.
+        List<int[]> ranges = new ArrayList<>();
+        addRanges(pattern, phoneTable, 0, 0, pronunciations.length, ranges);
+        return getWordIds(ranges, -1, limit);
+    }
+
+    /**
+     * @param ranges the start and end positions of ranges of the sorted pronunciations.
+     * @param wordId the id of a word to leave out of the result, or -1.
+     * @param limit  return at most this many word ids. For no limit, pass -1.
+     * @return the sorted ids of the words of the pronunciations in the ranges.
+     */
+    private int[] getWordIds(List<int[]> ranges, int wordId, int limit) {
+        int size = 0;
+        for (int[] range : ranges) size += range[1] - range[0];
+        if (size <= wordCount / 64) {
+            // Few words: sorting them is faster than going through a bit per word.
+            int[] result = new int[size];
+            size = 0;
+            for (int[] range : ranges) {
+                System.arraycopy(wordIds, range[0], result, size, range[1] - range[0]);
+                size += range[1] - range[0];
+            }
+            Arrays.sort(result);
+            size = 0;
+            // A word may have several variants with the same ending.
+            for (int i = 0; i < result.length && (limit < 0 || size < limit); i++) {
+                if (result[i] != wordId && (size == 0 || result[i] != result[size - 1])) result[size++] = result[i];
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        // The ranges of short endings have a large part of the words: a bit set sorts them in linear time.
+        long[] bits = new long[(wordCount + 63) / 64];
+        for (int[] range : ranges) {
+            for (int i = range[0]; i < range[1]; i++) bits[wordIds[i] >>> 6] |= 1L << wordIds[i];
+        }
+        if (wordId >= 0) bits[wordId >>> 6] &= ~(1L << wordId);
+        int[] result = new int[limit < 0 ? size : Math.min(size, limit)];
+        size = 0;
+        for (int i = 0; i < bits.length && size < result.length; i++) {
+            for (long word = bits[i]; word != 0 && size < result.length; word &= word - 1) {
+                result[size++] = i << 6 | Long.numberOfTrailingZeros(word);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Add the ranges of the pronunciations, between from and to, which match the pattern.
+     *
+     * @param depth the number of the last phones of the pattern which all the pronunciations between from and to
+     *              match.
+     */
+    private void addRanges(byte[] pattern, PhoneTable phoneTable, int depth, int from, int to, List<int[]> ranges) {
+        if (from >= to) return;
+        if (depth == pattern.length) {
+            ranges.add(new int[]{from, to});
+            return;
+        }
+        byte phone = pattern[pattern.length - 1 - depth];
+        for (int code = 0; code < phoneTable.size(); code++) {
+            if (phone >= 0 ? code == phone : -1 - phoneTable.getPhoneType(code).ordinal() == phone) {
+                int start = find(from, to, depth, code, false);
+                int end = find(start, to, depth, code, true);
+                addRanges(pattern, phoneTable, depth + 1, start, end, ranges);
+            }
+        }
+    }
+
+    /**
+     * @param from  the start of a range of pronunciations which share their last depth phones.
+     * @param to    the end of this range.
+     * @param after if false, find the start of the range of the pronunciations with the given phone before their
+     *              last depth phones.  If true, find the end of this range.
+     * @return the position in the sorted pronunciations.
+     */
+    private int find(int from, int to, int depth, int phone, boolean after) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            byte[] pronunciation = pronunciations[middle];
+            // The pronunciations which only have depth phones come first.
+            int middlePhone = pronunciation.length > depth ? pronunciation[pronunciation.length - 1 - depth] : -1;
+            if (middlePhone < phone || after && middlePhone == phone) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @param after if false, find the start of the range of the pronunciations with the last phones of the given
+     *              one.  If true, find the end of this range.
+     * @return the position in the sorted pronunciations.
+     */
+    private int find(byte[] pronunciation, int phoneCount, boolean after) {
+        int low = 0;
+        int high = pronunciations.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareEnding(pronunciations[middle], pronunciation, phoneCount);
+            if (comparison < 0 || after && comparison == 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Compare the reversed phones of a pronunciation, with the reversed last phones of another one.
+     *
+     * @return 0 if the first pronunciation ends with the last phoneCount phones of the other one.  If the first one
+     * is shorter, and the other one ends with it, the first one comes first.
+     */
+    private static int compareEnding(byte[] pronunciation, byte[] ending, int phoneCount) {
+        int length = Math.min(pronunciation.length, phoneCount);
+        for (int i = 1; i <= length; i++) {
+            int diff = pronunciation[pronunciation.length - i] - ending[ending.length - i];
+            if (diff != 0) return diff;
+        }
+        return pronunciation.length < phoneCount ? -1 : 0;
+    }
+
+    private static final class Entry {
+        private final int wordId;
+        private final byte[] pronunciation;
+
+        Entry(int wordId, byte[] pronunciation) {
+            this.wordId = wordId;
+            this.pronunciation = pronunciation;
+        }
+    }
+}
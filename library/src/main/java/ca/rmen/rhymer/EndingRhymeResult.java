@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.Serializable;
+
+/**
+ * The words which have the same last phones as one variant of a word.
+ * For example, RECUPERATE (R IH0 K UW1 P ER0 EY2 T) and COOPERATE (K OW0 AA1 P ER0 EY2 T) share the last four
+ * phones: P ER EY T.
+ */
+public class EndingRhymeResult implements Serializable {
+    /**
+     * The variant of the word.
+     * @see RhymeResult#variantNumber
+     */
+    public final int variantNumber;
+
+    /**
+     * The number of phones, at the end of the word variant, which the rhymes have.
+     */
+    public final int phoneCount;
+
+    /**
+     * The words which end with the same phones as the word variant, in alphabetical order.
+     */
+    public final String[] rhymes;
+
+    public EndingRhymeResult(int variantNumber, int phoneCount, String[] rhymes) {
+        this.variantNumber = variantNumber;
+        this.phoneCount = phoneCount;
+        this.rhymes = rhymes;
+    }
+}
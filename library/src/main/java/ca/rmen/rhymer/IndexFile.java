@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary format of a prebuilt rhyming index.
+ * <p/>
+ * All the numbers are big-endian ints. Each array is preceded by its length. Byte arrays are padded
+ * to a multiple of 4 bytes, so that all the int arrays are aligned.
+ * <pre>
+ * magic, version
+ * phone offsets      offsets in the phone data of each phone symbol, plus the end offset.
+ * phone data         UTF-8 bytes of the phone symbols of the phone table, in the order of their codes.
+ * phone types        the ordinal of the PhoneType of each phone.
+ * word offsets       offsets in the word data of each word, plus the end offset.
+ * word data          UTF-8 bytes of all the words, sorted alphabetically. The word id is the position of a word.
+ *                    For the words of the dictionary, this is also the order of their bytes.
+ * first variants     index of the first variant of each word, plus the total number of variants.
+ * variants           5 ints per variant: the variant number, and the key ids of the variant in each syllable index
+ *                    (-1 if the variant has no such key).
+ * pronunciations     the whole pronunciation of each variant. The keys of a variant are the ends of its pronunciation:
+ *   offsets          offsets in the pronunciation data of each variant, plus the end offset.
+ *   data             phone codes of all the pronunciations.
+ * syllable indexes   4 times (last stress syllables, last syllable, last two syllables, last three syllables):
+ *   key offsets      offsets in the key data of each key, plus the end offset.
+ *   key data         phone codes of all the keys, sorted by their phone codes. The key id is the position of a key.
+ *   posting offsets  offsets in the postings of the word ids of each key, plus the end offset.
+ *   postings         the sorted ids of the words having each key.
+ * </pre>
+ */
+final class IndexFile {
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x52484d58;
+    private static final int VERSION = 3;
+    static final int INDEX_COUNT = 4;
+    static final int VARIANT_FIELDS = 1 + INDEX_COUNT;
+
+    final IntBuffer phoneOffsets;
+    final ByteBuffer phoneData;
+    final IntBuffer phoneTypes;
+    final IntBuffer wordOffsets;
+    final ByteBuffer wordData;
+    final IntBuffer firstVariants;
+    final IntBuffer variants;
+    final IntBuffer pronunciationOffsets;
+    final ByteBuffer pronunciationData;
+    final SyllableIndex[] syllableIndexes = new SyllableIndex[INDEX_COUNT];
+    /**
+     * The number of bytes of the index, from the position of the buffer it was read from.
+     */
+    final int length;
+
+    /**
+     * The sections of one of the syllable indexes.
+     */
+    static class SyllableIndex {
+        final IntBuffer keyOffsets;
+        final ByteBuffer keyData;
+        final IntBuffer postingOffsets;
+        final IntBuffer postings;
+
+        private SyllableIndex(ByteBuffer buffer) {
+            keyOffsets = readInts(buffer);
+            keyData = readBytes(buffer);
+            postingOffsets = readInts(buffer);
+            postings = readInts(buffer);
+        }
+    }
+
+    /**
+     * Split the buffer into the sections of the index. The sections share the content of the buffer: nothing is copied.
+     *
+     * @throws IOException if the buffer doesn't contain an index in the expected format.
+     */
+    IndexFile(ByteBuffer buffer) throws IOException {
+        buffer = buffer.duplicate();
+        int start = buffer.position();
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a rhymer index");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported rhymer index version " + version);
+        phoneOffsets = readInts(buffer);
+        phoneData = readBytes(buffer);
+        phoneTypes = readInts(buffer);
+        wordOffsets = readInts(buffer);
+        wordData = readBytes(buffer);
+        firstVariants = readInts(buffer);
+        variants = readInts(buffer);
+        pronunciationOffsets = readInts(buffer);
+        pronunciationData = readBytes(buffer);
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            syllableIndexes[i] = new SyllableIndex(buffer);
+        }
+        length = buffer.position() - start;
+    }
+
+    int getWordCount() {
+        return wordOffsets.limit() - 1;
+    }
+
+    PhoneTable readPhoneTable() {
+        String[] symbols = decode(phoneOffsets, phoneData);
+        Map<String, PhoneType> phones = new HashMap<>();
+        for (int i = 0; i < symbols.length; i++) {
+            phones.put(symbols[i], PhoneType.values()[phoneTypes.get(i)]);
+        }
+        return new PhoneTable(phones);
+    }
+
+    /**
+     * @return the key with the given id, in one of the syllable indexes.
+     */
+    RhymeKey readKey(int index, int keyId) {
+        SyllableIndex syllableIndex = syllableIndexes[index];
+        int offset = syllableIndex.keyOffsets.get(keyId);
+        byte[] phones = new byte[syllableIndex.keyOffsets.get(keyId + 1) - offset];
+        for (int i = 0; i < phones.length; i++) phones[i] = syllableIndex.keyData.get(offset + i);
+        return new RhymeKey(phones, 0);
+    }
+
+    /**
+     * @return the variant at the given position of the variants, whose keys are the ends of its pronunciation.
+     */
+    WordVariant readWordVariant(int variant) {
+        int offset = pronunciationOffsets.get(variant);
+        byte[] pronunciation = new byte[pronunciationOffsets.get(variant + 1) - offset];
+        for (int i = 0; i < pronunciation.length; i++) pronunciation[i] = pronunciationData.get(offset + i);
+        RhymeKey[] keys = new RhymeKey[INDEX_COUNT];
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            int keyId = variants.get(variant * VARIANT_FIELDS + 1 + i);
+            if (keyId < 0) continue;
+            IntBuffer keyOffsets = syllableIndexes[i].keyOffsets;
+            int keyLength = keyOffsets.get(keyId + 1) - keyOffsets.get(keyId);
+            keys[i] = new RhymeKey(pronunciation, pronunciation.length - keyLength);
+        }
+        return new WordVariant(variants.get(variant * VARIANT_FIELDS), keys[0], keys[1], keys[2], keys[3]);
+    }
+
+    /**
+     * Read the index.
+     *
+     * @param variants will contain the words of the index and their variants.
+     * @param indexes  will contain the posting lists of each syllable index, in their order in the file.
+     * @return the table of the words, sorted alphabetically.
+     */
+    String[] read(Map<String, List<WordVariant>> variants, PostingLists[] indexes) {
+        String[] wordTable = decode(wordOffsets, wordData);
+        RhymeKey[][] keyTables = new RhymeKey[INDEX_COUNT][];
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            keyTables[i] = new RhymeKey[syllableIndexes[i].keyOffsets.limit() - 1];
+        }
+
+        for (int wordId = 0; wordId < wordTable.length; wordId++) {
+            int firstVariant = firstVariants.get(wordId);
+            int lastVariant = firstVariants.get(wordId + 1);
+            List<WordVariant> wordVariants = new ArrayList<>(lastVariant - firstVariant);
+            for (int variant = firstVariant; variant < lastVariant; variant++) {
+                WordVariant wordVariant = readWordVariant(variant);
+                wordVariants.add(wordVariant);
+                // The indexes share the keys of the variants.
+                List<RhymeKey> keys = wordVariant.getKeys();
+                for (int i = 0; i < INDEX_COUNT; i++) {
+                    int keyId = this.variants.get(variant * VARIANT_FIELDS + 1 + i);
+                    if (keyId >= 0 && keyTables[i][keyId] == null) keyTables[i][keyId] = keys.get(i);
+                }
+            }
+            variants.put(wordTable[wordId], wordVariants);
+        }
+
+        for (int i = 0; i < INDEX_COUNT; i++) {
+            for (int keyId = 0; keyId < keyTables[i].length; keyId++) {
+                if (keyTables[i][keyId] == null) keyTables[i][keyId] = readKey(i, keyId);
+            }
+            SyllableIndex syllableIndex = syllableIndexes[i];
+            indexes[i] = new PostingLists(keyTables[i], toArray(syllableIndex.postingOffsets),
+                    toArray(syllableIndex.postings));
+        }
+        return wordTable;
+    }
+
+    /**
+     * Write the given words and syllable indexes in the binary index format.
+     *
+     * @param phoneTable the phones used in the rhyming keys.
+     * @param words      a map of words to the list of word variants for each word
+     * @param wordTable  the words, sorted alphabetically.
+     * @param indexes    the posting lists of each syllable index, in their order in the file.
+     */
+    static void write(PhoneTable phoneTable, Map<String, List<WordVariant>> words, String[] wordTable, List<PostingLists> indexes, OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        String[] phoneSymbols = new String[phoneTable.size()];
+        int[] phoneTypes = new int[phoneTable.size()];
+        for (int code = 0; code < phoneSymbols.length; code++) {
+            phoneSymbols[code] = phoneTable.getSymbol(code);
+            phoneTypes[code] = phoneTable.getPhoneType(code).ordinal();
+        }
+        writeStrings(dos, phoneSymbols);
+        writeInts(dos, phoneTypes);
+        writeStrings(dos, wordTable);
+
+        int[] firstVariants = new int[wordTable.length + 1];
+        List<WordVariant> variants = new ArrayList<>();
+        for (int wordId = 0; wordId < wordTable.length; wordId++) {
+            firstVariants[wordId] = variants.size();
+            variants.addAll(words.get(wordTable[wordId]));
+        }
+        firstVariants[wordTable.length] = variants.size();
+        writeInts(dos, firstVariants);
+
+        int[] variantFields = new int[variants.size() * VARIANT_FIELDS];
+        byte[][] pronunciations = new byte[variants.size()][];
+        int field = 0;
+        for (int variant = 0; variant < pronunciations.length; variant++) {
+            WordVariant wordVariant = variants.get(variant);
+            variantFields[field++] = wordVariant.variantNumber;
+            List<RhymeKey> keys = wordVariant.getKeys();
+            for (int i = 0; i < INDEX_COUNT; i++) variantFields[field++] = getKeyId(indexes.get(i), keys.get(i));
+            pronunciations[variant] = wordVariant.getPronunciation();
+            if (pronunciations[variant] == null) pronunciations[variant] = new byte[0];
+        }
+        writeInts(dos, variantFields);
+        writeBytes(dos, pronunciations);
+
+        for (PostingLists index : indexes) {
+            writeKeys(dos, index.keys);
+            writeInts(dos, index.offsets);
+            writeInts(dos, index.postings);
+        }
+        dos.flush();
+    }
+
+    /**
+     * @return the id of the key, or -1 if the variant has no key, or if its key isn't indexed: a rhymer may not build
+     * the indexes of all the rhyme types.
+     */
+    private static int getKeyId(PostingLists index, RhymeKey key) {
+        return key == null ? -1 : index.getKeyId(key);
+    }
+
+    private static void writeKeys(DataOutputStream dos, RhymeKey[] keys) throws IOException {
+        int[] offsets = new int[keys.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            offsets[i + 1] = offsets[i] + keys[i].length();
+        }
+        writeInts(dos, offsets);
+        int length = offsets[keys.length];
+        dos.writeInt(length);
+        for (RhymeKey key : keys) dos.write(key.toArray());
+        for (int i = length; i % 4 != 0; i++) dos.writeByte(0);
+    }
+
+    private static void writeStrings(DataOutputStream dos, String[] strings) throws IOException {
+        byte[][] bytes = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) bytes[i] = strings[i].getBytes(UTF_8);
+        writeBytes(dos, bytes);
+    }
+
+    /**
+     * Write the offsets of the byte arrays, plus the end offset, followed by the bytes of all the arrays.
+     */
+    private static void writeBytes(DataOutputStream dos, byte[][] bytes) throws IOException {
+        int[] offsets = new int[bytes.length + 1];
+        for (int i = 0; i < bytes.length; i++) offsets[i + 1] = offsets[i] + bytes[i].length;
+        writeInts(dos, offsets);
+        int length = offsets[bytes.length];
+        dos.writeInt(length);
+        for (byte[] array : bytes) dos.write(array);
+        for (int i = length; i % 4 != 0; i++) dos.writeByte(0);
+    }
+
+    static void writeInts(DataOutputStream dos, int[] ints) throws IOException {
+        dos.writeInt(ints.length);
+        for (int i : ints) dos.writeInt(i);
+    }
+
+    static IntBuffer readInts(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length * 4);
+        buffer.position(buffer.position() + length * 4);
+        return slice.asIntBuffer();
+    }
+
+    static ByteBuffer readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + (length + 3) / 4 * 4);
+        return slice;
+    }
+
+    private static int[] toArray(IntBuffer intBuffer) {
+        int[] ints = new int[intBuffer.limit()];
+        intBuffer.duplicate().get(ints);
+        return ints;
+    }
+
+    /**
+     * Search for a string in a table of strings of the file, without copying the table.
+     *
+     * @param offsets the offsets of the strings in the data, plus the end offset.
+     * @param data    the bytes of the strings, which are sorted by their bytes.
+     * @param bytes   the bytes of the string to look up.
+     * @return the position of the string in the table, or -1 if the table doesn't contain the string.
+     */
+    static int search(IntBuffer offsets, ByteBuffer data, byte[] bytes) {
+        int low = 0;
+        int high = offsets.limit() - 2;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareBytes(data, offsets.get(mid), offsets.get(mid + 1), bytes);
+            if (comparison < 0) low = mid + 1;
+            else if (comparison > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the string at the given position of a table of strings of the file.
+     */
+    static String decode(IntBuffer offsets, ByteBuffer data, int index) {
+        int offset = offsets.get(index);
+        byte[] bytes = new byte[offsets.get(index + 1) - offset];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = data.get(offset + i);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Compare the bytes of the data between start and end with the given bytes, treating the bytes as unsigned.
+     */
+    private static int compareBytes(ByteBuffer data, int start, int end, byte[] bytes) {
+        int length = Math.min(end - start, bytes.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (data.get(start + i) & 0xff) - (bytes[i] & 0xff);
+            if (diff != 0) return diff;
+        }
+        return (end - start) - bytes.length;
+    }
+
+    private static String[] decode(IntBuffer offsets, ByteBuffer data) {
+        byte[] bytes = new byte[data.limit()];
+        data.duplicate().get(bytes);
+        String[] strings = new String[offsets.limit() - 1];
+        for (int i = 0; i < strings.length; i++) {
+            int offset = offsets.get(i);
+            strings[i] = new String(bytes, offset, offsets.get(i + 1) - offset, UTF_8);
+        }
+        return strings;
+    }
+}
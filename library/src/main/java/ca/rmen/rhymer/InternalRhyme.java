@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.Serializable;
+
+/**
+ * Two words which rhyme in the same line of a text.
+ */
+public class InternalRhyme implements Serializable {
+    /**
+     * The first word, in lower case.
+     */
+    public final String word1;
+
+    /**
+     * The second word, which comes after the first word in the line, in lower case.
+     */
+    public final String word2;
+
+    /**
+     * The best type of rhyme between the two words.
+     */
+    public final RhymeType rhymeType;
+
+    public InternalRhyme(String word1, String word2, RhymeType rhymeType) {
+        this.word1 = word1;
+        this.word2 = word2;
+        this.rhymeType = rhymeType;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The rhymes of one line of a text, found by a {@link RhymeSchemeAnalyzer}.
+ */
+public class LineRhymeResult implements Serializable {
+    /**
+     * The number of the line in the text, starting at 0.
+     */
+    public final long lineNumber;
+
+    /**
+     * The last word of the line, in lower case, or null if the line has no words.
+     */
+    public final String endWord;
+
+    /**
+     * The letter of the line in the rhyme scheme of its stanza, like "A" or "B", or null if the line has no
+     * words.  Lines with the same letter rhyme.  After Z, the letters are AA, AB, and so on.
+     */
+    public final String label;
+
+    /**
+     * The number of the previous line whose end word rhymes with the end word of this line, or -1 if there is none.
+     */
+    public final long rhymingLineNumber;
+
+    /**
+     * The best type of rhyme between the end words of this line and of the rhyming line, or null if there is no
+     * rhyming line.
+     */
+    public final RhymeType rhymeType;
+
+    /**
+     * The pairs of words of this line which rhyme on their stressed syllables, or on several syllables.
+     */
+    public final List<InternalRhyme> internalRhymes;
+
+    public LineRhymeResult(long lineNumber, String endWord, String label, long rhymingLineNumber,
+                           RhymeType rhymeType, List<InternalRhyme> internalRhymes) {
+        this.lineNumber = lineNumber;
+        this.endWord = endWord;
+        this.label = label;
+        this.rhymingLineNumber = rhymingLineNumber;
+        this.rhymeType = rhymeType;
+        this.internalRhymes = internalRhymes;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This implementation reads the rhyming data from an index file written by
+ * {@link MemoryRhymer#writeIndex(java.io.OutputStream)}, mapped in memory.
+ * <p/>
+ * The word table and the posting lists of the syllable indexes are read directly from the mapped file, and are
+ * never copied to the heap.
+ * Processes which map the same index file share one copy of it, in the operating system's page cache.
+ * <p/>
+ * The rhymer may be queried from multiple threads.
+ */
+public class MappedRhymer extends Rhymer {
+    final IndexFile indexFile;
+    private final PhoneTable phoneTable;
+
+    /**
+     * @param indexFile an index file written by {@link MemoryRhymer#writeIndex(java.io.OutputStream)}.
+     * @throws IOException if the file couldn't be mapped, or doesn't contain an index.
+     */
+    public MappedRhymer(File indexFile) throws IOException {
+        this(map(indexFile));
+    }
+
+    /**
+     * @param buffer a buffer containing an index written by {@link MemoryRhymer#writeIndex(java.io.OutputStream)}.
+     *               The buffer is read from its current position, and its content must not change.
+     * @throws IOException if the buffer doesn't contain an index.
+     */
+    public MappedRhymer(ByteBuffer buffer) throws IOException {
+        indexFile = new IndexFile(buffer);
+        phoneTable = indexFile.readPhoneTable();
+    }
+
+    /**
+     * @return the content of the file, mapped in memory, read-only. The mapping remains valid after this call.
+     * @throws IOException if the file couldn't be mapped.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping remains valid after the file is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public int getWordCount() {
+        return indexFile.getWordCount();
+    }
+
+    /**
+     * @return the phones used in the rhyming keys of the word variants.
+     */
+    public PhoneTable getPhoneTable() {
+        return phoneTable;
+    }
+
+    @Override
+    public List<WordVariant> getWordVariants(String word) {
+        int wordId = getWordId(word);
+        if (wordId < 0) return null;
+        int firstVariant = indexFile.firstVariants.get(wordId);
+        int lastVariant = indexFile.firstVariants.get(wordId + 1);
+        List<WordVariant> wordVariants = new ArrayList<>(lastVariant - firstVariant);
+        for (int variant = firstVariant; variant < lastVariant; variant++) {
+            wordVariants.add(indexFile.readWordVariant(variant));
+        }
+        return wordVariants;
+    }
+
+    @Override
+    protected int getWordId(String word) {
+        return IndexFile.search(indexFile.wordOffsets, indexFile.wordData, word.getBytes(IndexFile.UTF_8));
+    }
+
+    @Override
+    protected String getWord(int wordId) {
+        return IndexFile.decode(indexFile.wordOffsets, indexFile.wordData, wordId);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastStressSyllable(RhymeKey lastStressSyllable) {
+        return getWordsWithKey(0, lastStressSyllable);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastSyllable(RhymeKey lastSyllable) {
+        return getWordsWithKey(1, lastSyllable);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastTwoSyllables(RhymeKey lastTwoSyllables) {
+        return getWordsWithKey(2, lastTwoSyllables);
+    }
+
+    @Override
+    protected IntBuffer getWordsWithLastThreeSyllables(RhymeKey lastThreeSyllables) {
+        return getWordsWithKey(3, lastThreeSyllables);
+    }
+
+    /**
+     * @return a view of the posting list of the given key in the given syllable index, or null if no word has the key.
+     */
+    private IntBuffer getWordsWithKey(int index, RhymeKey key) {
+        IndexFile.SyllableIndex syllableIndex = indexFile.syllableIndexes[index];
+        int keyId = IndexFile.search(syllableIndex.keyOffsets, syllableIndex.keyData, key.toArray());
+        if (keyId < 0) return null;
+        IntBuffer postings = syllableIndex.postings.duplicate();
+        postings.limit(syllableIndex.postingOffsets.get(keyId + 1));
+        postings.position(syllableIndex.postingOffsets.get(keyId));
+        return postings.slice();
+    }
+}
@@ -19,22 +19,87 @@
 
 package ca.rmen.rhymer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * This implementation loads all the rhyming data in memory.
+ * <p/>
+ * The words are stored once, in an alphabetical word table.  The syllable indexes map each key to
+ * a posting list: the sorted ids (positions in the word table) of the words having that key.
+ * <p/>
+ * The index is only modified by {@link #addWordVariant(String, WordVariant)}, the {@code buildIndex} methods, and
+ * {@link #readIndex(InputStream)}. Once the index is built, the rhymer may be queried from multiple threads.
+ * To add or remove words while the rhymer is being queried, use {@link #update(Map, Collection)}, which leaves
+ * the rhymer unchanged and returns a new rhymer.
+ * <p/>
+ * A rhymer created with {@link #MemoryRhymer(Set)} only finds some types of rhymes. The syllable index of each of
+ * these types is built the first time it is queried.
  */
 public class MemoryRhymer extends Rhymer {
+    private static final int MIN_CHUNK_SIZE = 4096;
     private final Map<String, List<WordVariant>> words = new HashMap<>();
-    private final Map<String, SortedSet<String>> lastStressSyllableMap = new HashMap<>();
-    private final Map<String, SortedSet<String>> lastSyllableMap = new HashMap<>();
-    private final Map<String, SortedSet<String>> lastTwoSyllablesMap = new HashMap<>();
-    private final Map<String, SortedSet<String>> lastThreeSyllablesMap = new HashMap<>();
+    private String[] wordTable = new String[0];
+    private PhoneTable phoneTable;
+    private final Set<RhymeType> rhymeTypes;
+    private final boolean lazy;
+    // One syllable index per rhyme type, in the order of RhymeType.
+    private final SyllableIndex[] syllableIndexes = new SyllableIndex[RhymeType.values().length];
+    // Built on first use.
+    private volatile Map<RhymeKey, int[]> slantRhymeIndex;
+    // Built on first use.
+    private volatile EndingIndex endingIndex;
+    // Built on first use.
+    private volatile SpellingIndex spellingIndex;
+
+    /**
+     * Create a rhymer which finds all the types of rhymes. The syllable indexes are built by the
+     * {@code buildIndex} methods.
+     */
+    public MemoryRhymer() {
+        this(EnumSet.allOf(RhymeType.class), false);
+    }
+
+    /**
+     * Create a rhymer which only finds the given types of rhymes. The syllable indexes of the other types are never
+     * built, and the results for these types are always empty. The syllable index of each of the given types is
+     * built the first time it is queried, on the querying thread.
+     * <p/>
+     * The results of a type only leave out the words which are in the results of a better enabled type.
+     * For example, if {@link RhymeType#THREE_SYLLABLES} isn't enabled, the two-syllable rhymes also contain
+     * the words which rhyme on three syllables.
+     *
+     * @param rhymeTypes the types of rhymes to find.
+     */
+    public MemoryRhymer(Set<RhymeType> rhymeTypes) {
+        this(rhymeTypes, true);
+    }
+
+    private MemoryRhymer(Set<RhymeType> rhymeTypes, boolean lazy) {
+        this.rhymeTypes = rhymeTypes.isEmpty() ? EnumSet.noneOf(RhymeType.class) : EnumSet.copyOf(rhymeTypes);
+        this.lazy = lazy;
+        for (RhymeType rhymeType : RhymeType.values()) {
+            syllableIndexes[rhymeType.ordinal()] = new SyllableIndex(rhymeType);
+        }
+    }
 
     public Set<String> getWords() {
         return words.keySet();
@@ -44,61 +109,916 @@ public class MemoryRhymer extends Rhymer {
         return words.get(word);
     }
 
+    /**
+     * @return the phones used in the rhyming keys of the word variants.
+     */
+    public PhoneTable getPhoneTable() {
+        return phoneTable;
+    }
+
+    @Override
+    protected int getWordId(String word) {
+        int wordId = Arrays.binarySearch(wordTable, word);
+        return wordId < 0 ? -1 : wordId;
+    }
+
+    @Override
+    protected String getWord(int wordId) {
+        return wordTable[wordId];
+    }
+
     @Override
-    protected SortedSet<String> getWordsWithLastStressSyllable(String lastStressSyllable) {
-        return lastStressSyllableMap.get(lastStressSyllable);
+    protected IntBuffer getWordsWithLastStressSyllable(RhymeKey lastStressSyllable) {
+        return getPostingList(RhymeType.STRICT, lastStressSyllable);
+    }
+
+    protected IntBuffer getWordsWithLastSyllable(RhymeKey lastSyllable) {
+        return getPostingList(RhymeType.ONE_SYLLABLE, lastSyllable);
     }
 
-    protected SortedSet<String> getWordsWithLastSyllable(String lastSyllable) {
-        return lastSyllableMap.get(lastSyllable);
+    protected IntBuffer getWordsWithLastTwoSyllables(RhymeKey lastTwoSyllables) {
+        return getPostingList(RhymeType.TWO_SYLLABLES, lastTwoSyllables);
     }
 
-    protected SortedSet<String> getWordsWithLastTwoSyllables(String lastTwoSyllables) {
-        return lastTwoSyllablesMap.get(lastTwoSyllables);
+    protected IntBuffer getWordsWithLastThreeSyllables(RhymeKey lastThreeSyllables) {
+        return getPostingList(RhymeType.THREE_SYLLABLES, lastThreeSyllables);
     }
 
-    protected SortedSet<String> getWordsWithLastThreeSyllables(String lastThreeSyllables) {
-        return lastThreeSyllablesMap.get(lastThreeSyllables);
+    private IntBuffer getPostingList(RhymeType rhymeType, RhymeKey key) {
+        return syllableIndexes[rhymeType.ordinal()].get().get(key);
     }
 
     /**
-     * @param words     a map of words to the list of word variants for each word
+     * @param phoneTable the phones used in the rhyming keys of the word variants
+     * @param words      a map of words to the list of word variants for each word
      */
-    public void buildIndex(Map<String, List<WordVariant>> words) {
+    public void buildIndex(PhoneTable phoneTable, Map<String, List<WordVariant>> words) {
         this.words.clear();
         this.words.putAll(words);
-        lastStressSyllableMap.clear();
-        lastSyllableMap.clear();
-        lastTwoSyllablesMap.clear();
-        lastThreeSyllablesMap.clear();
+        buildIndex(phoneTable);
+    }
 
-        for (String word : words.keySet()) {
-            List<WordVariant> wordVariants = words.get(word);
-            for(WordVariant wordVariant : wordVariants) {
-                if (wordVariant.lastStressRhymingSyllables != null ) {
-                    indexWord(lastStressSyllableMap, wordVariant.lastStressRhymingSyllables, word);
+    /**
+     * Add a pronunciation of a word. It can be queried after the next call to {@link #buildIndex(PhoneTable)}.
+     *
+     * @param word        the word, in lower case.
+     * @param wordVariant one pronunciation of the word. The variants of a word should be added in order.
+     */
+    public void addWordVariant(String word, WordVariant wordVariant) {
+        List<WordVariant> wordVariants = words.get(word);
+        if (wordVariants == null) {
+            // Most words have only one pronunciation.
+            wordVariants = new ArrayList<>(1);
+        } else {
+            // The list may be shared with a rhymer created by update().
+            wordVariants = new ArrayList<>(wordVariants);
+        }
+        wordVariants.add(wordVariant);
+        words.put(word, wordVariants);
+    }
+
+    /**
+     * Remove all the pronunciations of a word added with {@link #addWordVariant(String, WordVariant)}.  Like the
+     * added pronunciations, this changes the results after the next call to {@link #buildIndex(PhoneTable)}.
+     */
+    public void removeWordVariants(String word) {
+        words.remove(word);
+    }
+
+    /**
+     * Index the word variants added with {@link #addWordVariant(String, WordVariant)}.
+     *
+     * @param phoneTable the phones used in the rhyming keys of the word variants
+     */
+    public void buildIndex(PhoneTable phoneTable) {
+        buildIndex(phoneTable, (ForkJoinPool) null);
+    }
+
+    /**
+     * Index the word variants added with {@link #addWordVariant(String, WordVariant)}, using the threads of the
+     * given pool. Ranges of words are indexed in parallel, and their partial indexes are merged in the order of the
+     * words: the index is the same as the one built on a single thread.
+     * If the syllable indexes are built on first use, this only sorts the words.
+     *
+     * @param phoneTable the phones used in the rhyming keys of the word variants
+     * @param pool       the threads used to build the index, or null to build it on the calling thread.
+     */
+    public void buildIndex(PhoneTable phoneTable, ForkJoinPool pool) {
+        RhymerListener listener = getListener();
+        if (listener == null) {
+            buildIndexes(phoneTable, pool);
+        } else {
+            long start = System.nanoTime();
+            buildIndexes(phoneTable, pool);
+            listener.onLoadPhase(RhymerListener.LoadPhase.BUILD_INDEX, System.nanoTime() - start);
+        }
+    }
+
+    private void buildIndexes(PhoneTable phoneTable, ForkJoinPool pool) {
+        this.phoneTable = phoneTable;
+        slantRhymeIndex = null;
+        endingIndex = null;
+        spellingIndex = null;
+        wordTable = words.keySet().toArray(new String[words.size()]);
+        Arrays.sort(wordTable);
+
+        final List<RhymeType> eagerRhymeTypes = new ArrayList<>();
+        for (RhymeType rhymeType : RhymeType.values()) {
+            SyllableIndex syllableIndex = syllableIndexes[rhymeType.ordinal()];
+            if (!rhymeTypes.contains(rhymeType)) syllableIndex.set(PostingLists.EMPTY);
+            else if (lazy) syllableIndex.set(null);
+            else eagerRhymeTypes.add(rhymeType);
+        }
+        if (eagerRhymeTypes.isEmpty()) return;
+
+        if (pool == null) {
+            List<Map<RhymeKey, PostingListBuilder>> builders = indexWords(eagerRhymeTypes, 0, wordTable.length);
+            for (int i = 0; i < eagerRhymeTypes.size(); i++) {
+                syllableIndexes[eagerRhymeTypes.get(i).ordinal()]
+                        .set(PostingLists.build(build(Collections.singletonList(builders.get(i)))));
+            }
+            return;
+        }
+
+        final int chunkSize = Math.max(MIN_CHUNK_SIZE, wordTable.length / (pool.getParallelism() * 4));
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                final List<IndexWordsTask> indexWordsTasks = new ArrayList<>();
+                for (int fromWordId = 0; fromWordId < wordTable.length; fromWordId += chunkSize) {
+                    int toWordId = Math.min(fromWordId + chunkSize, wordTable.length);
+                    indexWordsTasks.add(new IndexWordsTask(eagerRhymeTypes, fromWordId, toWordId));
+                }
+                invokeAll(indexWordsTasks);
+
+                List<RecursiveAction> mergeTasks = new ArrayList<>();
+                for (int i = 0; i < eagerRhymeTypes.size(); i++) {
+                    final int index = i;
+                    mergeTasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            List<Map<RhymeKey, PostingListBuilder>> partialIndexes = new ArrayList<>();
+                            for (IndexWordsTask indexWordsTask : indexWordsTasks) {
+                                partialIndexes.add(indexWordsTask.getRawResult().get(index));
+                            }
+                            syllableIndexes[eagerRhymeTypes.get(index).ordinal()]
+                                    .set(PostingLists.build(build(partialIndexes)));
+                        }
+                    });
+                }
+                invokeAll(mergeTasks);
+            }
+        });
+    }
+
+    /**
+     * Add or replace one word, without modifying this rhymer.
+     *
+     * @see #update(Map, Collection)
+     */
+    public MemoryRhymer putWord(String word, List<WordVariant> wordVariants) {
+        return update(Collections.singletonMap(word, wordVariants), Collections.<String>emptySet());
+    }
+
+    /**
+     * Remove one word, without modifying this rhymer.
+     *
+     * @see #update(Map, Collection)
+     */
+    public MemoryRhymer removeWord(String word) {
+        return update(Collections.<String, List<WordVariant>>emptyMap(), Collections.singleton(word));
+    }
+
+    /**
+     * Add, replace and remove words, without modifying this rhymer: the changes are in the returned rhymer.
+     * To change a rhymer which is being queried, publish the returned rhymer to the querying threads, for example
+     * with a volatile field: the queries which are in progress continue with the unchanged index of this rhymer.
+     * <p/>
+     * This is much faster than building the index again.  The posting lists are copied to new arrays: the posting
+     * lists of the keys of the changed words are built again, and the word ids after the first changed word are
+     * shifted in the other posting lists.  The slant rhyme index and the ending
+     * index are built again the first time they are queried.  The returned rhymer has the listener and the
+     * pronunciation guesser of this rhymer.
+     * <p/>
+     * The index of this rhymer must be built.  If several threads update the same rhymer, they must make sure
+     * that they don't lose each other's changes.
+     *
+     * @param putWords     the words to add or replace, in lower case, and all their variants. The variants must
+     *                     use the phone table of this rhymer.
+     * @param removedWords the words to remove.  A word which is also in putWords is replaced.
+     * @return a rhymer with the changed words.
+     */
+    public MemoryRhymer update(Map<String, List<WordVariant>> putWords, Collection<String> removedWords) {
+        MemoryRhymer rhymer = new MemoryRhymer(rhymeTypes, lazy);
+        rhymer.setListener(getListener());
+        rhymer.setPronunciationGuesser(getPronunciationGuesser());
+        rhymer.phoneTable = phoneTable;
+        rhymer.words.putAll(words);
+        Set<String> changedWords = new HashSet<>(removedWords);
+        changedWords.addAll(putWords.keySet());
+        for (String word : removedWords) rhymer.words.remove(word);
+        for (Map.Entry<String, List<WordVariant>> entry : putWords.entrySet()) {
+            rhymer.words.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+
+        // Merge the added words into the word table, and find the new id of each word.
+        List<String> addedWords = new ArrayList<>();
+        for (String word : putWords.keySet()) if (!words.containsKey(word)) addedWords.add(word);
+        Collections.sort(addedWords);
+        rhymer.wordTable = new String[rhymer.words.size()];
+        int[] newWordIds = new int[wordTable.length];
+        int shiftStart = wordTable.length;
+        int added = 0;
+        int size = 0;
+        for (int wordId = 0; wordId < wordTable.length; wordId++) {
+            String word = wordTable[wordId];
+            while (added < addedWords.size() && addedWords.get(added).compareTo(word) < 0) {
+                rhymer.wordTable[size++] = addedWords.get(added++);
+            }
+            if (rhymer.words.containsKey(word)) {
+                newWordIds[wordId] = size;
+                rhymer.wordTable[size++] = word;
+            } else {
+                newWordIds[wordId] = -1;
+            }
+            if (newWordIds[wordId] != wordId) shiftStart = Math.min(shiftStart, wordId);
+        }
+        while (added < addedWords.size()) rhymer.wordTable[size++] = addedWords.get(added++);
+
+        for (RhymeType rhymeType : RhymeType.values()) {
+            PostingLists postingLists = syllableIndexes[rhymeType.ordinal()].postingLists;
+            // The indexes which aren't built yet are built on first use, from the changed words, and the indexes
+            // of the other types stay empty.  A built index may be empty too: it gets the changed words.
+            if (postingLists != null && rhymeTypes.contains(rhymeType)) {
+                postingLists = update(rhymeType, postingLists, rhymer, changedWords, newWordIds, shiftStart);
+            }
+            rhymer.syllableIndexes[rhymeType.ordinal()].set(postingLists);
+        }
+        return rhymer;
+    }
+
+    /**
+     * @param rhymer       the rhymer with the changed words.
+     * @param newWordIds   the id of each word in the given rhymer, or -1 if the word was removed.
+     * @param shiftStart   the id of the first word whose id changed.
+     * @return the posting lists of the given syllable index, for the words of the given rhymer.
+     */
+    private PostingLists update(RhymeType rhymeType, PostingLists postingLists, MemoryRhymer rhymer,
+                                Set<String> changedWords, int[] newWordIds, int shiftStart) {
+        Set<RhymeKey> changedKeys = new HashSet<>();
+        for (String word : changedWords) {
+            addKeys(changedKeys, rhymeType, words.get(word));
+            addKeys(changedKeys, rhymeType, rhymer.words.get(word));
+        }
+
+        // The posting lists of the other keys don't contain the changed words: only their ids change.
+        Map<RhymeKey, int[]> changedPostingLists = new HashMap<>();
+        for (RhymeKey key : changedKeys) {
+            PostingListBuilder builder = new PostingListBuilder();
+            int[] changedWordIds = getWordIds(rhymer, changedWords, rhymeType, key);
+            int changed = 0;
+            int keyId = postingLists.getKeyId(key);
+            if (keyId >= 0) {
+                for (int wordId : postingLists.getWordIds(keyId)) {
+                    if (changedWords.contains(wordTable[wordId])) continue;
+                    int newWordId = newWordIds[wordId];
+                    while (changed < changedWordIds.length && changedWordIds[changed] < newWordId) {
+                        builder.add(changedWordIds[changed++]);
+                    }
+                    builder.add(newWordId);
+                }
+            }
+            while (changed < changedWordIds.length) builder.add(changedWordIds[changed++]);
+            changedPostingLists.put(key, builder.build());
+        }
+        return postingLists.update(changedPostingLists, newWordIds, shiftStart);
+    }
+
+    private static void addKeys(Set<RhymeKey> keys, RhymeType rhymeType, List<WordVariant> wordVariants) {
+        if (wordVariants == null) return;
+        for (WordVariant wordVariant : wordVariants) {
+            RhymeKey key = rhymeType.getKey(wordVariant);
+            if (key != null) keys.add(key);
+        }
+    }
+
+    /**
+     * @return the sorted ids, in the given rhymer, of the given words which have a variant with the given key.
+     */
+    private static int[] getWordIds(MemoryRhymer rhymer, Set<String> words, RhymeType rhymeType, RhymeKey key) {
+        int[] wordIds = new int[words.size()];
+        int size = 0;
+        for (String word : words) {
+            List<WordVariant> wordVariants = rhymer.words.get(word);
+            if (wordVariants == null) continue;
+            for (WordVariant wordVariant : wordVariants) {
+                if (key.equals(rhymeType.getKey(wordVariant))) {
+                    wordIds[size++] = rhymer.getWordId(word);
+                    break;
+                }
+            }
+        }
+        wordIds = Arrays.copyOf(wordIds, size);
+        Arrays.sort(wordIds);
+        return wordIds;
+    }
+
+    /**
+     * Find the slant rhymes of a word: the words whose last stressed syllables differ by one phone of the same
+     * {@link PhoneType}.  For example, the slant rhymes of TIME (T AY1 M) include LINE (L AY1 N).
+     * <p/>
+     * The slant rhymes are found with an index which is built the first time this is called: for each position of
+     * the last stressed syllables of each word variant, the index has the key with the phone at this position
+     * replaced by its phone type.  The slant rhymes of a word variant are in the posting lists of its own keys
+     * with a replaced phone.
+     *
+     * @param word       the word for which we want to find slant rhymes.
+     * @param maxResults return at most this many slant rhymes per word variant. For no limit, pass -1.
+     * @return one SlantRhymeResult per word variant (pronunciation) which has slant rhymes.
+     */
+    public List<SlantRhymeResult> getSlantRhymes(String word, int maxResults) {
+        List<SlantRhymeResult> results = new ArrayList<>();
+        String lookupWord = word.toLowerCase(Locale.US);
+        List<WordVariant> wordVariants = lookUpWordVariants(lookupWord);
+        if (wordVariants == null) return results;
+        int wordId = getWordId(lookupWord);
+        Map<RhymeKey, int[]> index = getSlantRhymeIndex();
+        for (WordVariant wordVariant : wordVariants) {
+            RhymeKey key = wordVariant.lastStressRhymingSyllables;
+            if (key == null) continue;
+            int[][] postingLists = new int[key.length()][];
+            for (int i = 0; i < key.length(); i++) {
+                postingLists[i] = index.get(getSlantKey(key, i));
+            }
+            // The strict rhymes are left out.  The strict rhyme index may not be enabled: we find them in the
+            // slant posting lists.
+            int[] strictRhymes = getWordsWithKey(postingLists, key);
+            String[] slantRhymes = union(postingLists, strictRhymes, wordId, maxResults);
+            if (slantRhymes.length > 0) results.add(new SlantRhymeResult(wordVariant.variantNumber, slantRhymes));
+        }
+        return results;
+    }
+
+    /**
+     * @param postingLists the slant posting lists of each position of the key.
+     * @return the sorted ids of the words which have a variant with the given last stressed syllables.  These words
+     * are in all the posting lists.
+     */
+    private int[] getWordsWithKey(int[][] postingLists, RhymeKey key) {
+        for (int[] postingList : postingLists) if (postingList == null) return new int[0];
+        int[] result = new int[postingLists[0].length];
+        int size = 0;
+        for (int wordId : postingLists[0]) {
+            boolean inAll = true;
+            for (int i = 1; i < postingLists.length && inAll; i++) {
+                inAll = Arrays.binarySearch(postingLists[i], wordId) >= 0;
+            }
+            // A word with several variants may be in all the posting lists without having the key.
+            if (inAll && hasStrictKey(wordTable[wordId], key)) result[size++] = wordId;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private boolean hasStrictKey(String word, RhymeKey key) {
+        for (WordVariant wordVariant : words.get(word)) {
+            if (key.equals(wordVariant.lastStressRhymingSyllables)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the given key, with the phone at the given position replaced by its phone type.  The phone type is
+     * stored as a negative number, which can't be a phone code.
+     */
+    private RhymeKey getSlantKey(RhymeKey key, int position) {
+        byte[] phones = key.toArray();
+        phones[position] = (byte) (-1 - phoneTable.getPhoneType(phones[position]).ordinal());
+        return new RhymeKey(phones, 0);
+    }
+
+    private Map<RhymeKey, int[]> getSlantRhymeIndex() {
+        Map<RhymeKey, int[]> result = slantRhymeIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = slantRhymeIndex;
+                if (result == null) {
+                    RhymerListener listener = getListener();
+                    long start = listener == null ? 0 : System.nanoTime();
+                    Map<RhymeKey, PostingListBuilder> builders = new HashMap<>();
+                    for (int wordId = 0; wordId < wordTable.length; wordId++) {
+                        for (WordVariant wordVariant : words.get(wordTable[wordId])) {
+                            RhymeKey key = wordVariant.lastStressRhymingSyllables;
+                            if (key == null) continue;
+                            for (int i = 0; i < key.length(); i++) {
+                                indexWord(builders, getSlantKey(key, i), wordId);
+                            }
+                        }
+                    }
+                    result = build(Collections.singletonList(builders));
+                    slantRhymeIndex = result;
+                    if (listener != null) {
+                        listener.onLoadPhase(RhymerListener.LoadPhase.BUILD_INDEX, System.nanoTime() - start);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merge sorted posting lists.
+     *
+     * @param postingLists the posting lists to merge.  Null posting lists are ignored.
+     * @param excluded     sorted ids of words to leave out of the result, or null.
+     * @param wordId       the id of a word to leave out of the result: the word we're finding rhymes for.
+     * @param limit        return at most this many words. For no limit, pass -1.
+     * @return the words which are in any of the posting lists, but not excluded, in alphabetical order.
+     */
+    private String[] union(int[][] postingLists, int[] excluded, int wordId, int limit) {
+        int size = 0;
+        for (int[] postingList : postingLists) if (postingList != null) size += postingList.length;
+        int[] resultIds = new int[limit < 0 ? size : Math.min(size, limit)];
+        int resultCount = 0;
+        int[] positions = new int[postingLists.length];
+        int excludedPosition = 0;
+        while (resultCount < resultIds.length) {
+            int candidateId = Integer.MAX_VALUE;
+            for (int i = 0; i < postingLists.length; i++) {
+                int[] postingList = postingLists[i];
+                if (postingList != null && positions[i] < postingList.length) {
+                    candidateId = Math.min(candidateId, postingList[positions[i]]);
+                }
+            }
+            if (candidateId == Integer.MAX_VALUE) break;
+            for (int i = 0; i < postingLists.length; i++) {
+                int[] postingList = postingLists[i];
+                if (postingList != null && positions[i] < postingList.length && postingList[positions[i]] == candidateId) {
+                    positions[i]++;
+                }
+            }
+            if (candidateId == wordId) continue;
+            if (excluded != null) {
+                while (excludedPosition < excluded.length && excluded[excludedPosition] < candidateId) excludedPosition++;
+                if (excludedPosition < excluded.length && excluded[excludedPosition] == candidateId) continue;
+            }
+            resultIds[resultCount++] = candidateId;
+        }
+        String[] result = new String[resultCount];
+        for (int i = 0; i < resultCount; i++) result[i] = wordTable[resultIds[i]];
+        return result;
+    }
+
+    /**
+     * Find the words which end with the same phones as a word, for any number of phones.  Unlike the rhymes of
+     * {@link #getRhymingWords(String)}, the phones don't have to start at a vowel.
+     * <p/>
+     * The phones are compared with the whole pronunciations of the words, so any number of phones up to the length
+     * of a pronunciation can be used.  The variants which have fewer phones have no results.  The words are found
+     * with an index which is built the first time one of the {@code getWordsWith...} methods is called.
+     *
+     * @param word       the word for which we want to find rhymes.
+     * @param phoneCount the number of phones, at the end of the word, which the rhymes must have.
+     * @param maxResults return at most this many rhymes per word variant. For no limit, pass -1.
+     * @return one EndingRhymeResult per word variant (pronunciation) which has rhymes.
+     */
+    public List<EndingRhymeResult> getWordsWithLastPhones(String word, int phoneCount, int maxResults) {
+        if (phoneCount <= 0) throw new IllegalArgumentException("Invalid phone count: " + phoneCount);
+        return getEndingRhymes(word, phoneCount, 0, maxResults);
+    }
+
+    /**
+     * Find the words which end with the same syllables as a word, for any number of syllables.  For one, two and
+     * three syllables, these are the rhymes of these types, including the words which also rhyme on more syllables:
+     * they are read from the syllable index of the type, if this rhymer has it.
+     *
+     * @param word          the word for which we want to find rhymes.
+     * @param syllableCount the number of syllables, at the end of the word, which the rhymes must have. The
+     *                      syllables start at a vowel, like the keys of {@link WordVariant}.
+     * @param maxResults    return at most this many rhymes per word variant. For no limit, pass -1.
+     * @return one EndingRhymeResult per word variant (pronunciation) which has rhymes.
+     * @see #getWordsWithLastPhones(String, int, int)
+     */
+    public List<EndingRhymeResult> getWordsWithLastSyllables(String word, int syllableCount, int maxResults) {
+        if (syllableCount <= 0) throw new IllegalArgumentException("Invalid syllable count: " + syllableCount);
+        return getEndingRhymes(word, 0, syllableCount, maxResults);
+    }
+
+    /**
+     * Find the words which have the longest ending in common with a word.  For example, the words which share the
+     * longest ending with RECUPERATE (R IH0 K UW1 P ER0 EY2 T) share its last four phones: P ER EY T.
+     *
+     * @param word       the word for which we want to find rhymes.
+     * @param maxResults return at most this many rhymes per word variant. For no limit, pass -1.
+     * @return one EndingRhymeResult per word variant (pronunciation) which has rhymes.
+     * @see #getWordsWithLastPhones(String, int, int)
+     */
+    public List<EndingRhymeResult> getWordsWithLongestSharedEnding(String word, int maxResults) {
+        return getEndingRhymes(word, 0, 0, maxResults);
+    }
+
+    /**
+     * Find the words which have a rhyming key matching a pattern of phones, without a word to start from.
+     * For example, the words whose last stressed syllables match "EY1 NASAL" include PAIN and CAME.
+     * <p/>
+     * A pattern is a list of phone symbols, separated by spaces.  The stress of the vowels is ignored: the keys
+     * don't have stress.  A {@link PhoneType} name, like NASAL, matches any phone of this type: the key is looked
+     * up for each of these phones.
+     *
+     * @param rhymeType  the type of the rhyming key: the key of {@link RhymeType#STRICT} starts at the last stressed
+     *                   vowel, and the other keys start at the vowel of their first syllable.
+     * @param pattern    the phones of the key.
+     * @param maxResults return at most this many words. For no limit, pass -1.
+     * @return the words with a matching key, in alphabetical order.
+     * @throws IllegalArgumentException if the pattern is empty or has an unknown phone.
+     */
+    public String[] getWordsWithRhymingKey(RhymeType rhymeType, String pattern, int maxResults) {
+        byte[] phones = parsePattern(pattern);
+        List<int[]> postingLists = new ArrayList<>();
+        addPostingLists(syllableIndexes[rhymeType.ordinal()].get(), phones, 0, postingLists);
+        return union(postingLists.toArray(new int[postingLists.size()][]), null, -1, maxResults);
+    }
+
+    /**
+     * Find the words which end with phones matching a pattern, without a word to start from.  For example, the words
+     * ending with "NASAL T" include PAINT and SPENT.
+     * <p/>
+     * The pattern has the format of {@link #getWordsWithRhymingKey(RhymeType, String, int)}, but the phones don't
+     * have to start at a vowel.  Like {@link #getWordsWithLastPhones(String, int, int)}, the phones are compared with
+     * the whole pronunciations of the words.  The words are found with the same index, without looking at all the
+     * words.
+     *
+     * @param pattern    the last phones of the words.
+     * @param maxResults return at most this many words. For no limit, pass -1.
+     * @return the words ending with matching phones, in alphabetical order.
+     * @throws IllegalArgumentException if the pattern is empty or has an unknown phone.
+     */
+    public String[] getWordsEndingWith(String pattern, int maxResults) {
+        int[] wordIds = getEndingIndex().getWordIds(parsePattern(pattern), phoneTable, maxResults);
+        String[] result = new String[wordIds.length];
+        for (int i = 0; i < wordIds.length; i++) result[i] = wordTable[wordIds[i]];
+        return result;
+    }
+
+    /**
+     * @return the phone codes of the pattern.  The phone types are stored as -1 - their ordinal, like in the slant
+     * rhyme index.
+     */
+    private byte[] parsePattern(String pattern) {
+        String[] symbols = pattern.trim().split("\\s+");
+        if (symbols[0].isEmpty()) throw new IllegalArgumentException("Empty pattern");
+        byte[] phones = new byte[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            String symbol = symbols[i];
+            PhoneType phoneType = getPhoneType(symbol);
+            if (phoneType != null) {
+                phones[i] = (byte) (-1 - phoneType.ordinal());
+                continue;
+            }
+            int end = symbol.length();
+            while (end > 0 && Character.isDigit(symbol.charAt(end - 1))) end--;
+            phones[i] = phoneTable.getCode(symbol, 0, end);
+            if (phones[i] < 0) throw new IllegalArgumentException("Unknown phone " + symbol + " in " + pattern);
+        }
+        return phones;
+    }
+
+    private static PhoneType getPhoneType(String name) {
+        for (PhoneType phoneType : PhoneType.values()) {
+            if (phoneType.name().equals(name)) return phoneType;
+        }
+        return null;
+    }
+
+    /**
+     * Add the posting lists of the keys matching the phones, replacing the phone types after the given position
+     * with each of their phones.
+     */
+    private void addPostingLists(PostingLists index, byte[] phones, int position, List<int[]> postingLists) {
+        if (position == phones.length) {
+            int keyId = index.getKeyId(new RhymeKey(phones));
+            if (keyId >= 0) postingLists.add(index.getWordIds(keyId));
+            return;
+        }
+        byte phone = phones[position];
+        if (phone >= 0) {
+            addPostingLists(index, phones, position + 1, postingLists);
+            return;
+        }
+        for (int code = 0; code < phoneTable.size(); code++) {
+            if (-1 - phoneTable.getPhoneType(code).ordinal() == phone) {
+                phones[position] = (byte) code;
+                addPostingLists(index, phones, position + 1, postingLists);
+            }
+        }
+        phones[position] = phone;
+    }
+
+    /**
+     * @param phoneCount    the number of phones the rhymes must have, or 0 to use the syllable count.
+     * @param syllableCount the number of syllables the rhymes must have, or 0 to find the longest shared ending.
+     */
+    private List<EndingRhymeResult> getEndingRhymes(String word, int phoneCount, int syllableCount, int maxResults) {
+        List<EndingRhymeResult> results = new ArrayList<>();
+        String lookupWord = word.toLowerCase(Locale.US);
+        List<WordVariant> wordVariants = lookUpWordVariants(lookupWord);
+        if (wordVariants == null) return results;
+        int wordId = getWordId(lookupWord);
+        for (WordVariant wordVariant : wordVariants) {
+            byte[] pronunciation = wordVariant.getPronunciation();
+            if (pronunciation == null) continue;
+            int variantPhoneCount;
+            if (phoneCount > 0) variantPhoneCount = phoneCount;
+            else if (syllableCount > 0) variantPhoneCount = getSyllablePhoneCount(pronunciation, syllableCount);
+            else variantPhoneCount = getEndingIndex().getLongestSharedEnding(pronunciation, wordId);
+            if (variantPhoneCount <= 0 || variantPhoneCount > pronunciation.length) continue;
+            int[] wordIds = syllableCount > 0 ? getSyllableRhymes(wordVariant, syllableCount, wordId, maxResults) : null;
+            if (wordIds == null) {
+                wordIds = getEndingIndex().getWordIds(pronunciation, variantPhoneCount, wordId, maxResults);
+            }
+            if (wordIds.length == 0) continue;
+            String[] rhymes = new String[wordIds.length];
+            for (int i = 0; i < wordIds.length; i++) rhymes[i] = wordTable[wordIds[i]];
+            results.add(new EndingRhymeResult(wordVariant.variantNumber, variantPhoneCount, rhymes));
+        }
+        return results;
+    }
+
+    /**
+     * @return the number of phones of the last syllables of the pronunciation, starting at a vowel, or 0 if the
+     * pronunciation doesn't have this many syllables.
+     */
+    private int getSyllablePhoneCount(byte[] pronunciation, int syllableCount) {
+        int vowelCount = 0;
+        for (int i = pronunciation.length - 1; i >= 0; i--) {
+            if (phoneTable.getPhoneType(pronunciation[i]) == PhoneType.VOWEL && ++vowelCount == syllableCount) {
+                return pronunciation.length - i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The words with the last one, two or three syllables of a variant are the posting list of its key, in the
+     * syllable index of this rhyme type: they are already sorted.
+     *
+     * @return the ids of the words with the same last syllables as the word variant, without the given word id, or
+     * null if this rhymer has no syllable index for this number of syllables.
+     */
+    private int[] getSyllableRhymes(WordVariant wordVariant, int syllableCount, int wordId, int limit) {
+        if (syllableCount > RhymeType.THREE_SYLLABLES.ordinal()) return null;
+        RhymeType rhymeType = RhymeType.values()[syllableCount];
+        if (!rhymeTypes.contains(rhymeType)) return null;
+        RhymeKey key = rhymeType.getKey(wordVariant);
+        IntBuffer postingList = key == null ? null : getPostingList(rhymeType, key);
+        if (postingList == null) return new int[0];
+        int[] result = new int[limit < 0 ? postingList.limit() : Math.min(limit, postingList.limit())];
+        int size = 0;
+        for (int i = 0; i < postingList.limit() && size < result.length; i++) {
+            int rhymeId = postingList.get(i);
+            if (rhymeId != wordId) result[size++] = rhymeId;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private EndingIndex getEndingIndex() {
+        EndingIndex result = endingIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = endingIndex;
+                if (result == null) {
+                    RhymerListener listener = getListener();
+                    long start = listener == null ? 0 : System.nanoTime();
+                    result = new EndingIndex(wordTable, words);
+                    endingIndex = result;
+                    if (listener != null) {
+                        listener.onLoadPhase(RhymerListener.LoadPhase.BUILD_INDEX, System.nanoTime() - start);
+                    }
                 }
-                if (wordVariant.lastThreeRhymingSyllables != null ) {
-                    indexWord(lastThreeSyllablesMap, wordVariant.lastThreeRhymingSyllables, word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the spellings of the words, built on first use.
+     */
+    SpellingIndex getSpellingIndex() {
+        SpellingIndex result = spellingIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = spellingIndex;
+                if (result == null) {
+                    RhymerListener listener = getListener();
+                    long start = listener == null ? 0 : System.nanoTime();
+                    result = new SpellingIndex(wordTable);
+                    spellingIndex = result;
+                    if (listener != null) {
+                        listener.onLoadPhase(RhymerListener.LoadPhase.BUILD_INDEX, System.nanoTime() - start);
+                    }
                 }
-                if (wordVariant.lastTwoRhymingSyllables != null) {
-                    indexWord(lastTwoSyllablesMap, wordVariant.lastTwoRhymingSyllables, word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write the index in a binary format which can be read back with {@link #readIndex(InputStream)}.
+     *
+     * @throws IOException if the index couldn't be written to the given stream.
+     */
+    public void writeIndex(OutputStream os) throws IOException {
+        IndexFile.write(phoneTable, words, wordTable, getIndexes(), os);
+    }
+
+    /**
+     * Write the index, followed by the rhymes of all the word variants, in a binary format which can be read by
+     * {@link PrecomputedRhymer}.  This finds the rhymes of every word: it takes much longer than writing the index,
+     * and the file is much bigger.
+     *
+     * @param maxResults keep at most this many rhymes of each type. For no limit, pass -1.
+     * @throws IOException if the results couldn't be written to the given stream.
+     */
+    public void writeResults(OutputStream os, int maxResults) throws IOException {
+        writeIndex(os);
+        ResultFile.write(this, words, wordTable, maxResults, os);
+    }
+
+    /**
+     * Build a rhymer from an index written by {@link #writeIndex(OutputStream)}. This is much faster
+     * than parsing the dictionary and calling {@link #buildIndex(PhoneTable, Map)}.
+     *
+     * @param is the index. The stream is read until its end, but it is not closed.
+     * @throws IOException if the stream couldn't be read or doesn't contain an index.
+     * @return the Rhymer based on the given index.
+     */
+    public static MemoryRhymer readIndex(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(is.available());
+        byte[] buffer = new byte[65536];
+        for (int count = is.read(buffer); count >= 0; count = is.read(buffer)) {
+            bytes.write(buffer, 0, count);
+        }
+        IndexFile indexFile = new IndexFile(ByteBuffer.wrap(bytes.toByteArray()));
+        MemoryRhymer rhymer = new MemoryRhymer();
+        rhymer.phoneTable = indexFile.readPhoneTable();
+        PostingLists[] indexes = new PostingLists[rhymer.syllableIndexes.length];
+        rhymer.wordTable = indexFile.read(rhymer.words, indexes);
+        for (int i = 0; i < indexes.length; i++) rhymer.syllableIndexes[i].set(indexes[i]);
+        return rhymer;
+    }
+
+    /**
+     * @return the syllable indexes, in the order in which they are stored in the index file. The indexes
+     * which are built on first use are built now.
+     */
+    private List<PostingLists> getIndexes() {
+        List<PostingLists> indexes = new ArrayList<>();
+        for (SyllableIndex syllableIndex : syllableIndexes) indexes.add(syllableIndex.get());
+        return indexes;
+    }
+
+    /**
+     * Index the words with the given range of ids.
+     *
+     * @return the posting list builders of the syllable index of each of the given rhyme types.
+     */
+    private List<Map<RhymeKey, PostingListBuilder>> indexWords(List<RhymeType> rhymeTypes, int fromWordId, int toWordId) {
+        List<Map<RhymeKey, PostingListBuilder>> builders = new ArrayList<>();
+        for (int i = 0; i < rhymeTypes.size(); i++) builders.add(new HashMap<RhymeKey, PostingListBuilder>());
+        // We go through the words in alphabetical order, so each posting list is built sorted.
+        for (int wordId = fromWordId; wordId < toWordId; wordId++) {
+            List<WordVariant> wordVariants = words.get(wordTable[wordId]);
+            for(WordVariant wordVariant : wordVariants) {
+                for (int i = 0; i < rhymeTypes.size(); i++) {
+                    indexWord(builders.get(i), rhymeTypes.get(i).getKey(wordVariant), wordId);
                 }
-                indexWord(lastSyllableMap, wordVariant.lastRhymingSyllable, word);
             }
         }
+        return builders;
     }
 
     /**
      * Add a mapping for the given syllable to the given word, to the given map.
      */
-    private void indexWord(Map<String, SortedSet<String>> map, String syllable, String word) {
-        SortedSet<String> wordsForSyllable = map.get(syllable);
+    private static void indexWord(Map<RhymeKey, PostingListBuilder> map, RhymeKey syllable, int wordId) {
+        if (syllable == null) return;
+        PostingListBuilder wordsForSyllable = map.get(syllable);
         if (wordsForSyllable == null) {
-            wordsForSyllable = new TreeSet<>();
+            wordsForSyllable = new PostingListBuilder();
             map.put(syllable, wordsForSyllable);
         }
-        wordsForSyllable.add(word);
+        wordsForSyllable.add(wordId);
+    }
+
+    /**
+     * @param partialIndexes the builders of consecutive ranges of words, in the order of the words.
+     * @return the posting lists of the given builders.
+     */
+    private static Map<RhymeKey, int[]> build(List<Map<RhymeKey, PostingListBuilder>> partialIndexes) {
+        Map<RhymeKey, PostingListBuilder> builders = partialIndexes.isEmpty()
+                ? Collections.<RhymeKey, PostingListBuilder>emptyMap() : partialIndexes.get(0);
+        if (partialIndexes.size() > 1) {
+            builders = new HashMap<>();
+            for (Map<RhymeKey, PostingListBuilder> partialIndex : partialIndexes) {
+                for (Map.Entry<RhymeKey, PostingListBuilder> entry : partialIndex.entrySet()) {
+                    PostingListBuilder builder = builders.get(entry.getKey());
+                    if (builder == null) builders.put(entry.getKey(), entry.getValue());
+                    else builder.addAll(entry.getValue());
+                }
+            }
+        }
+        Map<RhymeKey, int[]> index = new HashMap<>();
+        for (Map.Entry<RhymeKey, PostingListBuilder> entry : builders.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().build());
+        }
+        return index;
+    }
+
+    /**
+     * The syllable index of a rhyme type, which may be built the first time it is needed.
+     */
+    private class SyllableIndex {
+        private final RhymeType rhymeType;
+        private volatile PostingLists postingLists = PostingLists.EMPTY;
+
+        SyllableIndex(RhymeType rhymeType) {
+            this.rhymeType = rhymeType;
+        }
+
+        /**
+         * @param postingLists the index, or null to build it on first use.
+         */
+        void set(PostingLists postingLists) {
+            this.postingLists = postingLists;
+        }
+
+        PostingLists get() {
+            PostingLists result = postingLists;
+            if (result == null) {
+                synchronized (this) {
+                    result = postingLists;
+                    if (result == null) {
+                        RhymerListener listener = getListener();
+                        long start = listener == null ? 0 : System.nanoTime();
+                        List<Map<RhymeKey, PostingListBuilder>> builders =
+                                indexWords(Collections.singletonList(rhymeType), 0, wordTable.length);
+                        result = PostingLists.build(build(builders));
+                        postingLists = result;
+                        if (listener != null) {
+                            listener.onLoadPhase(RhymerListener.LoadPhase.BUILD_INDEX, System.nanoTime() - start);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Indexes a range of words.
+     */
+    private class IndexWordsTask extends RecursiveTask<List<Map<RhymeKey, PostingListBuilder>>> {
+        private final List<RhymeType> rhymeTypes;
+        private final int fromWordId;
+        private final int toWordId;
+
+        IndexWordsTask(List<RhymeType> rhymeTypes, int fromWordId, int toWordId) {
+            this.rhymeTypes = rhymeTypes;
+            this.fromWordId = fromWordId;
+            this.toWordId = toWordId;
+        }
+
+        @Override
+        protected List<Map<RhymeKey, PostingListBuilder>> compute() {
+            return indexWords(rhymeTypes, fromWordId, toWordId);
+        }
+    }
+
+    /**
+     * Accumulates the word ids of a posting list, which are added in increasing order.
+     */
+    private static class PostingListBuilder {
+        private int[] wordIds = new int[4];
+        private int size;
+
+        void add(int wordId) {
+            // Several variants of a word may have the same key.
+            if (size > 0 && wordIds[size - 1] == wordId) return;
+            if (size == wordIds.length) wordIds = Arrays.copyOf(wordIds, size * 2);
+            wordIds[size++] = wordId;
+        }
+
+        /**
+         * Append the word ids of a builder of a following range of words.
+         */
+        void addAll(PostingListBuilder other) {
+            if (size + other.size > wordIds.length) wordIds = Arrays.copyOf(wordIds, Math.max(size * 2, size + other.size));
+            System.arraycopy(other.wordIds, 0, wordIds, size, other.size);
+            size += other.size;
+        }
+
+        int[] build() {
+            return Arrays.copyOf(wordIds, size);
+        }
     }
 
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The phones of a dictionary, without stress.  Each phone has a code: its position in the alphabetical
+ * list of the phone symbols.
+ * Example: with the phones of the CMU dictionary, AA is 0, AE is 1, and ZH is 38.
+ */
+public class PhoneTable {
+    private final String[] symbols;
+    private final PhoneType[] phoneTypes;
+
+    /**
+     * @param phones a map of the phone symbols to their phone types.
+     */
+    public PhoneTable(Map<String, PhoneType> phones) {
+        if (phones.size() > Byte.MAX_VALUE) throw new IllegalArgumentException("Too many phones: " + phones.size());
+        symbols = phones.keySet().toArray(new String[phones.size()]);
+        Arrays.sort(symbols);
+        phoneTypes = new PhoneType[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            phoneTypes[i] = phones.get(symbols[i]);
+        }
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * @param symbol a phone symbol, without stress. Example: AE
+     * @return the code of the phone, or -1 if the table doesn't have this phone.
+     */
+    public byte getCode(String symbol) {
+        return getCode(symbol, 0, symbol.length());
+    }
+
+    /**
+     * Look up a phone symbol in a range of characters, without creating a String for it.
+     *
+     * @param chars contains a phone symbol, without stress, between start (inclusive) and end (exclusive).
+     * @return the code of the phone, or -1 if the table doesn't have this phone.
+     */
+    public byte getCode(CharSequence chars, int start, int end) {
+        int low = 0;
+        int high = symbols.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(symbols[middle], chars, start, end);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return (byte) middle;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the symbol of the phone with the given code.
+     */
+    public String getSymbol(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * @return the type of the phone with the given code.
+     */
+    public PhoneType getPhoneType(int code) {
+        return phoneTypes[code];
+    }
+
+    /**
+     * @return the phone symbols of the key, separated by spaces. Example: AH F OW N
+     */
+    public String toString(RhymeKey key) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < key.length(); i++) {
+            if (i > 0) builder.append(' ');
+            builder.append(symbols[key.getPhone(i)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Compare a symbol to a range of characters, like {@link String#compareTo(String)}.
+     */
+    private static int compare(String symbol, CharSequence chars, int start, int end) {
+        int length = Math.min(symbol.length(), end - start);
+        for (int i = 0; i < length; i++) {
+            int difference = symbol.charAt(i) - chars.charAt(start + i);
+            if (difference != 0) return difference;
+        }
+        return symbol.length() - (end - start);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The posting lists of a syllable index: the sorted ids of the words having each key.
+ * <p/>
+ * The lists are stored like the syllable indexes of the {@link IndexFile}: the keys are sorted by their phone codes,
+ * and the word ids of all the keys are in one array.  Keys are found with a hash table of their ids, so this takes
+ * less memory than a map with an entry and an array per key.  The lists are immutable.
+ */
+final class PostingLists {
+    static final PostingLists EMPTY = new PostingLists(new RhymeKey[0], new int[1], new int[0]);
+
+    /**
+     * The keys, sorted by their phone codes. The key id is the position of a key.
+     */
+    final RhymeKey[] keys;
+    /**
+     * The offsets in the postings of the word ids of each key, plus the end offset.
+     */
+    final int[] offsets;
+    /**
+     * The sorted ids of the words having each key.
+     */
+    final int[] postings;
+    // The key id + 1 in each slot of the hash table, or 0 for an empty slot.
+    private final int[] slots;
+
+    PostingLists(RhymeKey[] keys, int[] offsets, int[] postings) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.postings = postings;
+        // Between a third and two thirds of the slots are used.
+        slots = new int[Integer.highestOneBit(Math.max(1, keys.length) * 3)];
+        for (int keyId = 0; keyId < keys.length; keyId++) {
+            int slot = getSlot(keys[keyId]);
+            while (slots[slot] != 0) slot = (slot + 1) & (slots.length - 1);
+            slots[slot] = keyId + 1;
+        }
+    }
+
+    /**
+     * @param postingLists the posting list of each key.
+     */
+    static PostingLists build(Map<RhymeKey, int[]> postingLists) {
+        RhymeKey[] keys = postingLists.keySet().toArray(new RhymeKey[postingLists.size()]);
+        Arrays.sort(keys);
+        int[] offsets = new int[keys.length + 1];
+        for (int keyId = 0; keyId < keys.length; keyId++) {
+            offsets[keyId + 1] = offsets[keyId] + postingLists.get(keys[keyId]).length;
+        }
+        int[] postings = new int[offsets[keys.length]];
+        for (int keyId = 0; keyId < keys.length; keyId++) {
+            int[] wordIds = postingLists.get(keys[keyId]);
+            System.arraycopy(wordIds, 0, postings, offsets[keyId], wordIds.length);
+        }
+        return new PostingLists(keys, offsets, postings);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the id of the key, or -1 if no word has the key.
+     */
+    int getKeyId(RhymeKey key) {
+        for (int slot = getSlot(key); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+            RhymeKey slotKey = keys[slots[slot] - 1];
+            if (slotKey.hashCode() == key.hashCode() && slotKey.equals(key)) return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return a read-only view of the posting list of the key, or null if no word has the key.
+     */
+    IntBuffer get(RhymeKey key) {
+        int keyId = getKeyId(key);
+        if (keyId < 0) return null;
+        return IntBuffer.wrap(postings, offsets[keyId], offsets[keyId + 1] - offsets[keyId]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a copy of the posting list of the key with the given id.
+     */
+    int[] getWordIds(int keyId) {
+        return Arrays.copyOfRange(postings, offsets[keyId], offsets[keyId + 1]);
+    }
+
+    /**
+     * @return the posting lists after some words were added or removed.
+     * @param changedPostingLists the new posting lists of the keys of the added and removed words.  The keys with an
+     *                            empty posting list are left out.
+     * @param newWordIds          the new id of each word id of the other posting lists.
+     * @param shiftStart          the first word id which changed: the ids before it are the same.
+     */
+    PostingLists update(Map<RhymeKey, int[]> changedPostingLists, int[] newWordIds, int shiftStart) {
+        RhymeKey[] changedKeys = changedPostingLists.keySet().toArray(new RhymeKey[changedPostingLists.size()]);
+        Arrays.sort(changedKeys);
+        RhymeKey[] newKeys = new RhymeKey[keys.length + changedKeys.length];
+        int[] newOffsets = new int[newKeys.length + 1];
+        int[] newPostings = new int[postings.length];
+        int keyCount = 0;
+        int keyId = 0;
+        int changedKeyId = 0;
+        while (keyId < keys.length || changedKeyId < changedKeys.length) {
+            int comparison = keyId == keys.length ? 1
+                    : changedKeyId == changedKeys.length ? -1
+                    : keys[keyId].compareTo(changedKeys[changedKeyId]);
+            int offset = newOffsets[keyCount];
+            if (comparison < 0) {
+                int length = offsets[keyId + 1] - offsets[keyId];
+                newPostings = ensureCapacity(newPostings, offset + length);
+                System.arraycopy(postings, offsets[keyId], newPostings, offset, length);
+                if (newPostings[offset + length - 1] >= shiftStart) {
+                    for (int i = offset; i < offset + length; i++) newPostings[i] = newWordIds[newPostings[i]];
+                }
+                newKeys[keyCount++] = keys[keyId++];
+                newOffsets[keyCount] = offset + length;
+            } else {
+                if (comparison == 0) keyId++;
+                RhymeKey key = changedKeys[changedKeyId++];
+                int[] wordIds = changedPostingLists.get(key);
+                if (wordIds.length == 0) continue;
+                newPostings = ensureCapacity(newPostings, offset + wordIds.length);
+                System.arraycopy(wordIds, 0, newPostings, offset, wordIds.length);
+                newKeys[keyCount++] = key;
+                newOffsets[keyCount] = offset + wordIds.length;
+            }
+        }
+        return new PostingLists(Arrays.copyOf(newKeys, keyCount), Arrays.copyOf(newOffsets, keyCount + 1),
+                Arrays.copyOf(newPostings, newOffsets[keyCount]));
+    }
+
+    private static int[] ensureCapacity(int[] ints, int length) {
+        return length <= ints.length ? ints : Arrays.copyOf(ints, Math.max(ints.length * 2, length));
+    }
+
+    private int getSlot(RhymeKey key) {
+        int hash = key.hashCode() * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & (slots.length - 1);
+    }
+}
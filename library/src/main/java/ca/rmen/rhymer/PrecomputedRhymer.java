@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This implementation reads the rhymes of each word variant from a file written by
+ * {@link MemoryRhymer#writeResults(java.io.OutputStream, int)}, mapped in memory.
+ * <p/>
+ * The rhymes are computed when the file is written: a query only decodes the rhymes of the word's variants, without
+ * walking through the posting lists of the index.  Queries for more rhymes than were precomputed, and the other
+ * queries of {@link Rhymer}, are answered by the index which is also in the file, like {@link MappedRhymer}.
+ * <p/>
+ * The rhymer may be queried from multiple threads.
+ */
+public class PrecomputedRhymer extends MappedRhymer {
+    private final ResultFile resultFile;
+
+    /**
+     * @param resultFile a file written by {@link MemoryRhymer#writeResults(java.io.OutputStream, int)}.
+     * @throws IOException if the file couldn't be mapped, or doesn't contain precomputed rhymes.
+     */
+    public PrecomputedRhymer(File resultFile) throws IOException {
+        this(map(resultFile));
+    }
+
+    /**
+     * @param buffer a buffer containing precomputed rhymes written by
+     *               {@link MemoryRhymer#writeResults(java.io.OutputStream, int)}. The buffer is read from its current
+     *               position, and its content must not change.
+     * @throws IOException if the buffer doesn't contain precomputed rhymes.
+     */
+    public PrecomputedRhymer(ByteBuffer buffer) throws IOException {
+        super(buffer);
+        ByteBuffer results = buffer.duplicate();
+        results.position(buffer.position() + indexFile.length);
+        resultFile = new ResultFile(results);
+        if (resultFile.variantResults.limit() != indexFile.variants.limit() / IndexFile.VARIANT_FIELDS) {
+            throw new IOException("The precomputed rhymes don't match the index");
+        }
+    }
+
+    /**
+     * @return the maximum number of rhymes of each type which were precomputed, or -1 if all of them were.
+     */
+    public int getMaxResults() {
+        return resultFile.maxResults;
+    }
+
+    @Override
+    List<RhymeResult> findRhymingWords(String lookupWord, int offset, int limit) {
+        int maxResults = resultFile.maxResults;
+        if (maxResults >= 0 && (limit < 0 || offset + limit > maxResults)) {
+            return super.findRhymingWords(lookupWord, offset, limit);
+        }
+
+        int wordId = getWordId(lookupWord);
+        // The rhymes of the guessed pronunciations of unknown words aren't precomputed.
+        if (wordId < 0) return super.findRhymingWords(lookupWord, offset, limit);
+        List<RhymeResult> results = new ArrayList<>();
+        int firstVariant = indexFile.firstVariants.get(wordId);
+        int lastVariant = indexFile.firstVariants.get(wordId + 1);
+        for (int variant = firstVariant; variant < lastVariant; variant++) {
+            RhymeType[] rhymeTypes = RhymeType.values();
+            int[][] wordIds = new int[rhymeTypes.length][];
+            for (RhymeType rhymeType : rhymeTypes) {
+                wordIds[rhymeType.ordinal()] = resultFile.readWordIds(variant, rhymeType, wordId, offset, limit);
+            }
+            int variantNumber = indexFile.variants.get(variant * IndexFile.VARIANT_FIELDS);
+            RhymeResult result = toRhymeResult(variantNumber, wordIds, -1, -1);
+            if (result != null) results.add(result);
+        }
+        return results;
+    }
+}
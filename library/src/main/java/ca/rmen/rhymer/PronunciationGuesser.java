@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.List;
+
+/**
+ * Guesses the pronunciations of words which aren't in the dictionary of a {@link Rhymer}, so that their rhymes
+ * can be found.
+ *
+ * @see Rhymer#setPronunciationGuesser(PronunciationGuesser)
+ */
+public interface PronunciationGuesser {
+    /**
+     * This may be called from multiple threads at the same time.
+     *
+     * @param rhymer the rhymer which looks up the word: the one the guesser is set on.  A guesser which is set on
+     *               several rhymers, like the rhymers returned by {@link MemoryRhymer#update}, is called with each
+     *               of them.
+     * @param word   a word which isn't in the dictionary, in lower case.
+     * @return the guessed pronunciations of the word, with rhyming keys which use the phone table of the rhymer,
+     * or null if they can't be guessed.
+     */
+    List<WordVariant> guessWordVariants(Rhymer rhymer, String word);
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary format of precomputed rhymes, which follows an index in the format of
+ * {@link IndexFile}.
+ * <p/>
+ * Variants with the same rhyming keys have the same rhymes, except for the words themselves: they share one result,
+ * which contains the words themselves, and each word is left out of its own rhymes when the result is read.
+ * <p/>
+ * All the numbers are big-endian ints, except in the result data. Each array is preceded by its length.
+ * <pre>
+ * magic, version
+ * max results        the maximum number of rhymes of each type, or -1 if all the rhymes are kept.
+ * variant results    the id of the result of each variant of the index, in the order of the variants of the index.
+ * result offsets     4 offsets in the result data per result (strict, one-syllable, two-syllable, three-syllable
+ *                    rhymes), plus the end offset.
+ * result data        for each list of rhymes: the number of rhymes, followed by the sorted word ids of the rhymes,
+ *                    each one as the difference with the previous one (the first one with -1). All these numbers
+ *                    are varints: 7 bits per byte, least significant bits first, with the high bit set on all
+ *                    the bytes but the last one.  Padded to a multiple of 4 bytes.
+ * </pre>
+ */
+final class ResultFile {
+    private static final int MAGIC = 0x52484d50;
+    private static final int VERSION = 1;
+    private static final int RHYME_TYPE_COUNT = RhymeType.values().length;
+
+    final int maxResults;
+    final IntBuffer variantResults;
+    private final IntBuffer resultOffsets;
+    private final ByteBuffer resultData;
+
+    /**
+     * Split the buffer into the sections of the results. The sections share the content of the buffer: nothing is
+     * copied.
+     *
+     * @throws IOException if the buffer doesn't contain results in the expected format.
+     */
+    ResultFile(ByteBuffer buffer) throws IOException {
+        buffer = buffer.duplicate();
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) throw new IOException("No precomputed rhymes");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported precomputed rhymes version " + version);
+        maxResults = buffer.getInt();
+        variantResults = IndexFile.readInts(buffer);
+        resultOffsets = IndexFile.readInts(buffer);
+        resultData = IndexFile.readBytes(buffer);
+    }
+
+    /**
+     * @param variant   the position of the variant in the index.
+     * @param rhymeType the type of the rhymes to read.
+     * @param wordId    the id of a word to leave out of the rhymes: the word we're finding rhymes for.
+     * @param offset    the number of rhymes to skip.
+     * @param limit     read at most this many rhymes. For no limit, pass -1.
+     * @return the ids of the rhymes.
+     */
+    int[] readWordIds(int variant, RhymeType rhymeType, int wordId, int offset, int limit) {
+        ByteBuffer data = resultData.duplicate();
+        data.position(resultOffsets.get(variantResults.get(variant) * RHYME_TYPE_COUNT + rhymeType.ordinal()));
+        int count = readVarint(data);
+        int[] wordIds = new int[limit < 0 ? count : Math.min(count, limit)];
+        int size = 0;
+        int rhymeId = -1;
+        for (int i = 0; i < count && size < wordIds.length; i++) {
+            rhymeId += readVarint(data);
+            if (rhymeId == wordId) continue;
+            if (offset > 0) offset--;
+            else wordIds[size++] = rhymeId;
+        }
+        return size == wordIds.length ? wordIds : Arrays.copyOf(wordIds, size);
+    }
+
+    private static int readVarint(ByteBuffer data) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Precompute the rhymes of all the variants of the words, and write them in the binary format of results.
+     *
+     * @param rhymer     finds the rhymes.
+     * @param words      a map of words to the list of word variants for each word
+     * @param wordTable  the words, sorted alphabetically, in the order of the index.
+     * @param maxResults keep at most this many rhymes of each type. For no limit, pass -1.
+     * @throws IOException if the results couldn't be written, or are too big for the format.
+     */
+    static void write(Rhymer rhymer, Map<String, List<WordVariant>> words, String[] wordTable, int maxResults, OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(maxResults);
+
+        // One result for each distinct set of keys.
+        Map<List<RhymeKey>, Integer> resultIds = new HashMap<>();
+        List<WordVariant> results = new ArrayList<>();
+        List<Integer> variantResults = new ArrayList<>();
+        for (String word : wordTable) {
+            for (WordVariant wordVariant : words.get(word)) {
+                List<RhymeKey> keys = wordVariant.getKeys();
+                Integer resultId = resultIds.get(keys);
+                if (resultId == null) {
+                    resultId = results.size();
+                    resultIds.put(keys, resultId);
+                    results.add(wordVariant);
+                }
+                variantResults.add(resultId);
+            }
+        }
+        dos.writeInt(variantResults.size());
+        for (int resultId : variantResults) dos.writeInt(resultId);
+
+        // The shared results contain the word itself, so we keep one more rhyme of each type.
+        int limit = maxResults < 0 ? -1 : maxResults + 1;
+
+        // The offsets come before the data: we find the rhymes twice, instead of keeping all of them in memory.
+        int[] offsets = new int[results.size() * RHYME_TYPE_COUNT + 1];
+        long length = 0;
+        for (int resultId = 0; resultId < results.size(); resultId++) {
+            int[][] wordIds = rhymer.getRhymingWordIds(results.get(resultId), -1, 0, limit);
+            for (int i = 0; i < RHYME_TYPE_COUNT; i++) {
+                offsets[resultId * RHYME_TYPE_COUNT + i] = (int) length;
+                length += getEncodedLength(wordIds[i]);
+                if (length > Integer.MAX_VALUE) throw new IOException("Too many precomputed rhymes: limit the results");
+            }
+        }
+        offsets[offsets.length - 1] = (int) length;
+        IndexFile.writeInts(dos, offsets);
+
+        dos.writeInt((int) length);
+        for (WordVariant result : results) {
+            int[][] wordIds = rhymer.getRhymingWordIds(result, -1, 0, limit);
+            for (int i = 0; i < RHYME_TYPE_COUNT; i++) encode(dos, wordIds[i]);
+        }
+        for (long i = length; i % 4 != 0; i++) dos.writeByte(0);
+        dos.flush();
+    }
+
+    private static int getEncodedLength(int[] wordIds) {
+        int length = getVarintLength(wordIds.length);
+        int previousId = -1;
+        for (int wordId : wordIds) {
+            length += getVarintLength(wordId - previousId);
+            previousId = wordId;
+        }
+        return length;
+    }
+
+    private static void encode(DataOutputStream dos, int[] wordIds) throws IOException {
+        writeVarint(dos, wordIds.length);
+        int previousId = -1;
+        for (int wordId : wordIds) {
+            writeVarint(dos, wordId - previousId);
+            previousId = wordId;
+        }
+    }
+
+    private static int getVarintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) length++;
+        return length;
+    }
+
+    private static void writeVarint(DataOutputStream dos, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            dos.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dos.writeByte(value);
+    }
+}
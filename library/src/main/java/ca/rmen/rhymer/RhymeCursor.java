@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the rhymes of one type, for one word variant, in alphabetical order.
+ * <p/>
+ * The rhymes are found while iterating, by walking through the posting lists of the rhymer's index: skipping
+ * rhymes doesn't create any Strings, and the cursor doesn't keep the rhymes it has already returned.
+ * A cursor may not be used from multiple threads at the same time.
+ */
+public class RhymeCursor implements Iterator<String> {
+    private final Rhymer rhymer;
+    private final int variantNumber;
+    private final RhymeType rhymeType;
+    private final IntBuffer wordIds;
+    private final int wordId;
+    private final IntBuffer[] excluded;
+    private final int[] excludedPositions;
+    private int position;
+    private int nextWordId = -1;
+
+    /**
+     * @param wordIds  the sorted ids of the rhymes.  Null if there are none.
+     * @param wordId   the id of a word to leave out of the rhymes: the word we're finding rhymes for.
+     * @param excluded sorted ids of words to leave out of the rhymes. Null posting lists are ignored.
+     */
+    RhymeCursor(Rhymer rhymer, int variantNumber, RhymeType rhymeType, IntBuffer wordIds, int wordId,
+                IntBuffer... excluded) {
+        this.rhymer = rhymer;
+        this.variantNumber = variantNumber;
+        this.rhymeType = rhymeType;
+        this.wordIds = wordIds;
+        this.wordId = wordId;
+        this.excluded = excluded;
+        excludedPositions = new int[excluded.length];
+    }
+
+    /**
+     * @return the variant of the word whose rhymes we iterate over.
+     */
+    public int getVariantNumber() {
+        return variantNumber;
+    }
+
+    public RhymeType getRhymeType() {
+        return rhymeType;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextWordId < 0) nextWordId = findNextWordId();
+        return nextWordId >= 0;
+    }
+
+    @Override
+    public String next() {
+        int nextId = nextWordId();
+        if (nextId < 0) throw new NoSuchElementException();
+        return rhymer.getWord(nextId);
+    }
+
+    /**
+     * Skip rhymes, without creating their Strings.
+     *
+     * @return the number of rhymes skipped: less than count if there were fewer rhymes left.
+     */
+    public int skip(int count) {
+        int skipped = 0;
+        while (skipped < count && nextWordId() >= 0) skipped++;
+        return skipped;
+    }
+
+    /**
+     * @return the next rhymes, at most count of them.
+     */
+    public String[] next(int count) {
+        int[] ids = nextWordIds(count);
+        String[] words = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) words[i] = rhymer.getWord(ids[i]);
+        return words;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the id of the next rhyme, or -1 if there are no more rhymes.
+     */
+    int nextWordId() {
+        int nextId = hasNext() ? nextWordId : -1;
+        nextWordId = -1;
+        return nextId;
+    }
+
+    /**
+     * @return the ids of the next rhymes, at most limit of them. For no limit, pass -1.
+     */
+    int[] nextWordIds(int limit) {
+        int remaining = getMaxRemaining();
+        int[] ids = new int[limit < 0 ? remaining : Math.min(remaining, limit)];
+        int size = 0;
+        while (size < ids.length) {
+            int nextId = nextWordId();
+            if (nextId < 0) break;
+            ids[size++] = nextId;
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @return at least the number of rhymes left.
+     */
+    int getMaxRemaining() {
+        return wordIds == null ? 0 : wordIds.limit() - position + (nextWordId < 0 ? 0 : 1);
+    }
+
+    private int findNextWordId() {
+        if (wordIds == null) return -1;
+        int size = wordIds.limit();
+        // We walk through each excluded posting list at the same time as our posting list.
+        while (position < size) {
+            int candidateId = wordIds.get(position++);
+            if (candidateId == wordId) continue;
+            boolean isExcluded = false;
+            for (int j = 0; j < excluded.length && !isExcluded; j++) {
+                IntBuffer excludedIds = excluded[j];
+                if (excludedIds == null) continue;
+                excludedPositions[j] = advance(excludedIds, excludedPositions[j], candidateId);
+                isExcluded = excludedPositions[j] < excludedIds.limit()
+                        && excludedIds.get(excludedPositions[j]) == candidateId;
+            }
+            if (!isExcluded) return candidateId;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the first word id in the posting list, starting at the given position, which is
+     * not smaller than the given word id.
+     */
+    private static int advance(IntBuffer wordIds, int position, int wordId) {
+        int size = wordIds.limit();
+        // Gallop ahead, so that we don't walk through all of a long list when we only need a few of its ids.
+        int step = 1;
+        int low = position;
+        int high = position;
+        while (high < size && wordIds.get(high) < wordId) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        if (high > size) high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (wordIds.get(mid) < wordId) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
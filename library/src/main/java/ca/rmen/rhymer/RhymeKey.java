@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+/**
+ * A sequence of phones, without stress, which words must share to rhyme.
+ * Each phone is stored as one byte: its code in the {@link PhoneTable}.
+ * <p/>
+ * Example: for TELEPHONE  T EH1 L AH0 F OW2 N, the key of the last two syllables is the phones AH F OW N.
+ */
+public final class RhymeKey implements Comparable<RhymeKey> {
+    private final byte[] phones;
+    private final int offset;
+    private final int hashCode;
+
+    /**
+     * @param phones the phone codes of the key.  The array is copied.
+     */
+    public RhymeKey(byte[] phones) {
+        this(phones.clone(), 0);
+    }
+
+    /**
+     * Create a key with the end of the given phones.  Word variants use this to share one array of phones between
+     * their keys: the phones of their whole pronunciation.
+     *
+     * @param phones the phone codes.  The array is not copied, and must not be modified.
+     * @param offset the position, in phones, of the first phone of the key.
+     */
+    public RhymeKey(byte[] phones, int offset) {
+        this.phones = phones;
+        this.offset = offset;
+        int hashCode = 1;
+        for (int i = offset; i < phones.length; i++) hashCode = 31 * hashCode + phones[i];
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * @return the number of phones in the key.
+     */
+    public int length() {
+        return phones.length - offset;
+    }
+
+    /**
+     * @return the code of the phone at the given position of the key.
+     */
+    public byte getPhone(int index) {
+        return phones[offset + index];
+    }
+
+    /**
+     * @return the phone codes which the key is the end of.  The array must not be modified.
+     */
+    byte[] getAllPhones() {
+        return phones;
+    }
+
+    /**
+     * @return a copy of the phone codes of the key.
+     */
+    public byte[] toArray() {
+        byte[] result = new byte[length()];
+        System.arraycopy(phones, offset, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RhymeKey)) return false;
+        RhymeKey other = (RhymeKey) o;
+        return hashCode == other.hashCode && compareTo(other) == 0;
+    }
+
+    /**
+     * Keys are compared phone by phone, by their phone codes.
+     */
+    @Override
+    public int compareTo(RhymeKey other) {
+        int length = Math.min(length(), other.length());
+        for (int i = 0; i < length; i++) {
+            int diff = getPhone(i) - other.getPhone(i);
+            if (diff != 0) return diff;
+        }
+        return length() - other.length();
+    }
+
+    /**
+     * @return the phone codes of the key, separated by spaces. Use {@link PhoneTable#toString(RhymeKey)} to
+     * get the phone symbols.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length(); i++) {
+            if (i > 0) builder.append(' ');
+            builder.append(getPhone(i));
+        }
+        return builder.toString();
+    }
+}
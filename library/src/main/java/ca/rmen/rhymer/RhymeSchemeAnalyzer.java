@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Finds the rhyme scheme of a text, like ABAB or AABB, one line at a time.
+ * <p/>
+ * The end word of each line is compared with the end words of the previous lines of its stanza: a line rhymes with
+ * the line with the best rhyme, or the most recent one if several lines rhyme as well.  It gets the letter of this
+ * line, or a new letter.  An empty line starts a new stanza, with new letters.  The words of each line are also
+ * compared with each other, to find internal rhymes.
+ * <p/>
+ * The words are compared with their keys: strict rhymes and rhymes on two or three syllables count, but rhymes
+ * on one unstressed syllable, like "happy" and "sadly", don't.  Only the given number of previous lines are kept,
+ * so each line takes the same time, and the memory doesn't grow with the text.  An analyzer may not be used from
+ * multiple threads at the same time.
+ */
+public class RhymeSchemeAnalyzer {
+    private static final int DEFAULT_MAX_LINES = 16;
+    // Longer lines are cut, for the internal rhymes.
+    private static final int MAX_INTERNAL_RHYME_WORDS = 32;
+
+    private final Rhymer rhymer;
+    private final int maxLines;
+    // The most recent lines of the stanza which have words, from the most recent one.
+    private final Deque<Line> lines = new ArrayDeque<>();
+    private long lineNumber;
+    private long labelCount;
+
+    /**
+     * Create an analyzer which compares each line with the previous 16 lines.
+     */
+    public RhymeSchemeAnalyzer(Rhymer rhymer) {
+        this(rhymer, DEFAULT_MAX_LINES);
+    }
+
+    /**
+     * @param rhymer   finds the pronunciations of the words.
+     * @param maxLines the number of previous lines of a stanza which each line is compared with.
+     */
+    public RhymeSchemeAnalyzer(Rhymer rhymer, int maxLines) {
+        if (maxLines <= 0) throw new IllegalArgumentException("Invalid number of lines: " + maxLines);
+        this.rhymer = rhymer;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * @param line the next line of the text.
+     * @return the rhymes of the line.
+     */
+    public LineRhymeResult addLine(String line) {
+        long currentLineNumber = lineNumber++;
+        List<String> words = getWords(line);
+        if (words.isEmpty()) {
+            if (line.trim().isEmpty()) {
+                lines.clear();
+                labelCount = 0;
+            }
+            return new LineRhymeResult(currentLineNumber, null, null, -1, null, Collections.<InternalRhyme>emptyList());
+        }
+
+        List<List<WordVariant>> wordVariants = new ArrayList<>(words.size());
+        for (String word : words) wordVariants.add(rhymer.lookUpWordVariants(word));
+        int end = words.size() - 1;
+        String endWord = words.get(end);
+        List<WordVariant> endWordVariants = wordVariants.get(end);
+
+        Line rhymingLine = null;
+        RhymeType rhymeType = null;
+        for (Line previousLine : lines) {
+            RhymeType previousRhymeType = getRhymeType(endWord, endWordVariants, previousLine.endWord,
+                    previousLine.endWordVariants);
+            if (isBetter(previousRhymeType, rhymeType)) {
+                rhymingLine = previousLine;
+                rhymeType = previousRhymeType;
+            }
+        }
+        String label = rhymingLine == null ? getLabel(labelCount++) : rhymingLine.label;
+        if (lines.size() == maxLines) lines.removeLast();
+        lines.addFirst(new Line(endWord, endWordVariants, label, currentLineNumber));
+
+        return new LineRhymeResult(currentLineNumber, endWord, label,
+                rhymingLine == null ? -1 : rhymingLine.lineNumber, rhymeType, getInternalRhymes(words, wordVariants));
+    }
+
+    private static List<InternalRhyme> getInternalRhymes(List<String> words, List<List<WordVariant>> wordVariants) {
+        List<InternalRhyme> internalRhymes = new ArrayList<>();
+        for (int i = Math.max(0, words.size() - MAX_INTERNAL_RHYME_WORDS); i < words.size(); i++) {
+            for (int j = i + 1; j < words.size(); j++) {
+                // Repeated words don't count.
+                if (words.get(i).equals(words.get(j))) continue;
+                RhymeType rhymeType = getRhymeType(words.get(i), wordVariants.get(i), words.get(j), wordVariants.get(j));
+                if (rhymeType != null) internalRhymes.add(new InternalRhyme(words.get(i), words.get(j), rhymeType));
+            }
+        }
+        return internalRhymes;
+    }
+
+    /**
+     * @param wordVariants1 the pronunciations of the first word, or null if they are unknown.
+     * @param wordVariants2 the pronunciations of the second word, or null if they are unknown.
+     * @return the best type of rhyme between the words, or null if they don't rhyme or only rhyme on one syllable.
+     * Words whose pronunciations are unknown only rhyme with themselves.
+     */
+    private static RhymeType getRhymeType(String word1, List<WordVariant> wordVariants1,
+                                          String word2, List<WordVariant> wordVariants2) {
+        if (wordVariants1 == null || wordVariants2 == null) return word1.equals(word2) ? RhymeType.STRICT : null;
+        RhymeType rhymeType = Rhymer.getRhymeType(wordVariants1, wordVariants2);
+        return rhymeType == RhymeType.ONE_SYLLABLE ? null : rhymeType;
+    }
+
+    /**
+     * @return true if the first type of rhyme is better than the second one, which may be null.
+     */
+    private static boolean isBetter(RhymeType rhymeType, RhymeType otherRhymeType) {
+        if (rhymeType == null) return false;
+        if (otherRhymeType == null) return true;
+        if (otherRhymeType == RhymeType.STRICT) return false;
+        return rhymeType == RhymeType.STRICT || rhymeType.ordinal() > otherRhymeType.ordinal();
+    }
+
+    /**
+     * @return the letters of a label: A to Z, then AA, AB, and so on.
+     */
+    private static String getLabel(long index) {
+        StringBuilder label = new StringBuilder();
+        for (long i = index; i >= 0; i = i / 26 - 1) label.insert(0, (char) ('A' + i % 26));
+        return label.toString();
+    }
+
+    /**
+     * @return the words of the line, in lower case: the sequences of letters, digits and apostrophes, without the
+     * apostrophes at their start or end.
+     */
+    private static List<String> getWords(String line) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ' ';
+            boolean isWordChar = Character.isLetterOrDigit(c) || c == '\'' || c == '\u2019';
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                addWord(words, line, start, i);
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static void addWord(List<String> words, String line, int start, int end) {
+        while (start < end && !Character.isLetterOrDigit(line.charAt(start))) start++;
+        while (end > start && !Character.isLetterOrDigit(line.charAt(end - 1))) end--;
+        if (start < end) words.add(line.substring(start, end).replace('\u2019', '\'').toLowerCase(Locale.US));
+    }
+
+    private static final class Line {
+        private final String endWord;
+        private final List<WordVariant> endWordVariants;
+        private final String label;
+        private final long lineNumber;
+
+        Line(String endWord, List<WordVariant> endWordVariants, String label, long lineNumber) {
+            this.endWord = endWord;
+            this.endWordVariants = endWordVariants;
+            this.label = label;
+            this.lineNumber = lineNumber;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+/**
+ * Ranks the rhymes of a word, for {@link Rhymer#getRhymingWords(String, int, RhymeScorer)}.
+ * For example, a scorer may prefer common words, or words with as many syllables as the word.
+ * <p/>
+ * A scorer may be called from multiple threads, if the rhymer is queried from multiple threads.
+ */
+public interface RhymeScorer {
+    /**
+     * @param word  the word we're finding rhymes for, in lower case.
+     * @param rhyme a word which rhymes with it.
+     * @return the score of the rhyme. Rhymes with higher scores are returned first.
+     */
+    double getScore(String word, String rhyme);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.rmen.rhymer;
+
+/**
+ * The types of rhymes found by a {@link Rhymer}. Each type has a syllable index, and a field in {@link RhymeResult}.
+ */
+public enum RhymeType {
+    /**
+     * Words which rhyme from the last stressed syllable to the end of the word.
+     */
+    STRICT,
+
+    /**
+     * Words which rhyme with the last syllable.
+     */
+    ONE_SYLLABLE,
+
+    /**
+     * Words which rhyme with the last two syllables.
+     */
+    TWO_SYLLABLES,
+
+    /**
+     * Words which rhyme with the last three syllables.
+     */
+    THREE_SYLLABLES;
+
+    /**
+     * @return the key of the word variant for this type of rhyme, or null if the word variant doesn't have
+     * enough syllables.
+     */
+    RhymeKey getKey(WordVariant wordVariant) {
+        switch (this) {
+            case STRICT:
+                return wordVariant.lastStressRhymingSyllables;
+            case ONE_SYLLABLE:
+                return wordVariant.lastRhymingSyllable;
+            case TWO_SYLLABLES:
+                return wordVariant.lastTwoRhymingSyllables;
+            default:
+                return wordVariant.lastThreeRhymingSyllables;
+        }
+    }
+}
@@ -19,16 +19,66 @@
 
 package ca.rmen.rhymer;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
+/**
+ * Finds rhymes for words.
+ * <p/>
+ * The implementation's index identifies each word by an id: the position of the word in the alphabetical
+ * list of all the words.  For each rhyming key, the index has a posting list: the sorted ids of the words
+ * having this key.
+ * <p/>
+ * Queries never modify the posting lists returned by the implementation's index: once the index is built,
+ * a Rhymer may be queried concurrently from multiple threads.
+ */
 public abstract class Rhymer {
 
+    /**
+     * The number of distinct word variants a task of a batch query finds rhymes for.
+     */
+    private static final int BATCH_TASK_SIZE = 256;
+
+    private volatile RhymerListener listener;
+    private volatile PronunciationGuesser pronunciationGuesser;
+
+    /**
+     * @param listener receives the measurements of the queries, and of the load if the rhymer is still loading.
+     *                 Pass null to stop measuring.
+     */
+    public void setListener(RhymerListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the listener which receives the measurements of the rhymer, or null if the rhymer isn't measured.
+     */
+    public RhymerListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param pronunciationGuesser guesses the pronunciations of the words which aren't in the dictionary, to find
+     *                             their rhymes.  Pass null to only find the rhymes of the words of the dictionary.
+     */
+    public void setPronunciationGuesser(PronunciationGuesser pronunciationGuesser) {
+        this.pronunciationGuesser = pronunciationGuesser;
+    }
+
+    public PronunciationGuesser getPronunciationGuesser() {
+        return pronunciationGuesser;
+    }
+
     /**
      * @param word the word for which we want to find rhymes.
      * @return a list of RhymeResults.  Most words will have one RhymeResult.  Words with multiple possible
@@ -45,74 +95,510 @@ public abstract class Rhymer {
      * pronunciations (word variants) will have one RhymeResult per variant.
      */
     public List<RhymeResult> getRhymingWords(String word, int maxResults) {
+        return getRhymingWords(word, 0, maxResults);
+    }
+
+    /**
+     * Find one page of the rhymes of a word.  Only the rhymes of the page are created.
+     *
+     * @param word   the word for which we want to find rhymes.
+     * @param offset the number of rhymes to skip, per rhyme type.
+     * @param limit  return at most this many results per rhyme type. For no limit, pass -1.
+     * @return a list of RhymeResults.  Most words will have one RhymeResult.  Words with multiple possible
+     * pronunciations (word variants) will have one RhymeResult per variant.  Word variants which have no rhymes
+     * in the page have no RhymeResult.
+     */
+    public List<RhymeResult> getRhymingWords(String word, int offset, int limit) {
+        RhymerListener listener = this.listener;
+        if (listener == null) return findRhymingWords(word.toLowerCase(Locale.US), offset, limit);
+        long start = System.nanoTime();
+        List<RhymeResult> results = findRhymingWords(word.toLowerCase(Locale.US), offset, limit);
+        listener.onQuery(word, System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * @param lookupWord the word for which we want to find rhymes, in lower case.
+     * @see #getRhymingWords(String, int, int)
+     */
+    List<RhymeResult> findRhymingWords(String lookupWord, int offset, int limit) {
         List<RhymeResult> results = new ArrayList<>();
-        String lookupWord = word.toLowerCase(Locale.US);
 
-        // The word doesn't exist in our dictionary
-        List<WordVariant> wordVariants = getWordVariants(lookupWord);
+        // The word doesn't exist in our dictionary, and we can't guess its pronunciation
+        List<WordVariant> wordVariants = lookUpWordVariants(lookupWord);
         if (wordVariants == null) return results;
+        int wordId = getWordId(lookupWord);
 
         // One RhymeResult per word variant (pronunciation)
         for (WordVariant wordVariant : wordVariants) {
+            RhymeResult result = toRhymeResult(wordVariant.variantNumber,
+                    getRhymingWordIds(wordVariant, wordId, offset, limit), -1, -1);
+            if (result != null) results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Find the best rhymes of a word, according to a scorer, instead of the first rhymes in alphabetical order.
+     * The best rhymes are kept in a heap of maxResults rhymes, so only the returned rhymes are sorted.
+     *
+     * @param word       the word for which we want to find rhymes.
+     * @param maxResults return at most this many results per rhyme type. For no limit, pass -1.
+     * @param scorer     gives a score to each rhyme.
+     * @return a list of RhymeResults, as returned by {@link #getRhymingWords(String, int)}.  The rhymes of each type
+     * are sorted by decreasing score, and rhymes with the same score are in alphabetical order.
+     */
+    public List<RhymeResult> getRhymingWords(String word, int maxResults, RhymeScorer scorer) {
+        RhymerListener listener = this.listener;
+        if (listener == null) return findBestRhymingWords(word.toLowerCase(Locale.US), maxResults, scorer);
+        long start = System.nanoTime();
+        List<RhymeResult> results = findBestRhymingWords(word.toLowerCase(Locale.US), maxResults, scorer);
+        listener.onQuery(word, System.nanoTime() - start);
+        return results;
+    }
 
-            SortedSet<String> matches0 = getWordsWithLastStressSyllable(wordVariant.lastStressRhymingSyllables);
-            SortedSet<String> matches1 = getWordsWithLastSyllable(wordVariant.lastRhymingSyllable);
-            SortedSet<String> matches2 = new TreeSet<>();
-            SortedSet<String> matches3 = new TreeSet<>();
+    private List<RhymeResult> findBestRhymingWords(String lookupWord, int maxResults, RhymeScorer scorer) {
+        List<RhymeResult> results = new ArrayList<>();
+        List<WordVariant> wordVariants = lookUpWordVariants(lookupWord);
+        if (wordVariants == null) return results;
+        int wordId = getWordId(lookupWord);
 
-            if (wordVariant.lastTwoRhymingSyllables != null) {
-                matches2 = getWordsWithLastTwoSyllables(wordVariant.lastTwoRhymingSyllables);
-                matches1.removeAll(matches2);
+        for (WordVariant wordVariant : wordVariants) {
+            RhymeCursor[] cursors = getRhymeCursors(wordVariant, wordId);
+            int[][] wordIds = new int[cursors.length][];
+            for (int i = 0; i < cursors.length; i++) {
+                RhymeCursor cursor = cursors[i];
+                int capacity = maxResults < 0 ? cursor.getMaxRemaining() : Math.min(maxResults, cursor.getMaxRemaining());
+                TopWordIds topWordIds = new TopWordIds(capacity);
+                if (capacity > 0) {
+                    for (int rhymeId = cursor.nextWordId(); rhymeId >= 0; rhymeId = cursor.nextWordId()) {
+                        topWordIds.add(rhymeId, scorer.getScore(lookupWord, getWord(rhymeId)));
+                    }
+                }
+                wordIds[i] = topWordIds.toSortedArray();
             }
-            if (wordVariant.lastThreeRhymingSyllables != null) {
-                matches3 = getWordsWithLastThreeSyllables(wordVariant.lastThreeRhymingSyllables);
-                matches1.removeAll(matches3);
-                matches2.removeAll(matches3);
+            RhymeResult result = toRhymeResult(wordVariant.variantNumber, wordIds, -1, -1);
+            if (result != null) results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Find out if two words rhyme, by comparing the rhyming keys of all their variants, without finding all the
+     * rhymes of a word.
+     *
+     * @return the type of rhyme in which the second word would be in the rhyme results of the first word: strict
+     * rhymes are the best, followed by the rhymes on three, two and one syllables.  Null if the words don't rhyme,
+     * or if the pronunciation of one of them is unknown.  A word rhymes strictly with itself.
+     */
+    public RhymeType doRhyme(String word1, String word2) {
+        RhymerListener listener = this.listener;
+        if (listener == null) return findRhymeType(word1, word2);
+        long start = System.nanoTime();
+        RhymeType result = findRhymeType(word1, word2);
+        listener.onQuery(word1, System.nanoTime() - start);
+        return result;
+    }
+
+    private RhymeType findRhymeType(String word1, String word2) {
+        List<WordVariant> wordVariants1 = lookUpWordVariants(word1.toLowerCase(Locale.US));
+        if (wordVariants1 == null) return null;
+        List<WordVariant> wordVariants2 = lookUpWordVariants(word2.toLowerCase(Locale.US));
+        return wordVariants2 == null ? null : getRhymeType(wordVariants1, wordVariants2);
+    }
+
+    /**
+     * Find out if many pairs of words rhyme, as {@link #doRhyme(String, String)} does.  Each distinct word is only
+     * looked up once.
+     *
+     * @param words1 the first word of each pair.
+     * @param words2 the second word of each pair, in the same order.
+     * @return the type of rhyme of each pair, or null for the pairs which don't rhyme.
+     */
+    public RhymeType[] doRhyme(List<String> words1, List<String> words2) {
+        if (words1.size() != words2.size()) {
+            throw new IllegalArgumentException("Different numbers of words: " + words1.size() + ", " + words2.size());
+        }
+        RhymerListener listener = this.listener;
+        if (listener == null) return findRhymeTypes(words1, words2);
+        long start = System.nanoTime();
+        RhymeType[] result = findRhymeTypes(words1, words2);
+        listener.onQuery(null, System.nanoTime() - start);
+        return result;
+    }
+
+    private RhymeType[] findRhymeTypes(List<String> words1, List<String> words2) {
+        Map<String, List<WordVariant>> wordVariants = new HashMap<>();
+        RhymeType[] result = new RhymeType[words1.size()];
+        for (int i = 0; i < result.length; i++) {
+            List<WordVariant> wordVariants1 = getCachedWordVariants(wordVariants, words1.get(i));
+            List<WordVariant> wordVariants2 = getCachedWordVariants(wordVariants, words2.get(i));
+            if (wordVariants1 != null && wordVariants2 != null) result[i] = getRhymeType(wordVariants1, wordVariants2);
+        }
+        return result;
+    }
+
+    /**
+     * @return the pronunciations of the word, from the given cache, or looked up and added to the cache.
+     */
+    private List<WordVariant> getCachedWordVariants(Map<String, List<WordVariant>> cache, String word) {
+        // Unknown words are cached too, as null.
+        List<WordVariant> wordVariants = cache.get(word);
+        if (wordVariants == null && !cache.containsKey(word)) {
+            wordVariants = lookUpWordVariants(word.toLowerCase(Locale.US));
+            cache.put(word, wordVariants);
+        }
+        return wordVariants;
+    }
+
+    /**
+     * Find the rhymes of several words. The words which have the same rhyming syllables share the same work:
+     * for example, "tray" and "stray" are only looked up once.
+     *
+     * @param words      the words for which we want to find rhymes.
+     * @param maxResults return at most this many results per rhyme type. For no limit, pass -1.
+     * @return the RhymeResults of each word, as returned by {@link #getRhymingWords(String, int)}, in the order of
+     * the given words. A word which is given several times has one entry.
+     */
+    public Map<String, List<RhymeResult>> getRhymingWords(Collection<String> words, int maxResults) {
+        RhymerListener listener = this.listener;
+        if (listener == null) return findRhymingWords(words, maxResults);
+        long start = System.nanoTime();
+        Map<String, List<RhymeResult>> results = findRhymingWords(words, maxResults);
+        listener.onQuery(null, System.nanoTime() - start);
+        return results;
+    }
+
+    private Map<String, List<RhymeResult>> findRhymingWords(Collection<String> words, int maxResults) {
+        Batch batch = new Batch(words, maxResults);
+        batch.findRhymes(0, batch.wordVariants.size());
+        return batch.getResults();
+    }
+
+    /**
+     * Find the rhymes of several words, using the threads of the given executor.
+     * The words which have the same rhyming syllables share the same work:
+     * for example, "tray" and "stray" are only looked up once.
+     *
+     * @param words      the words for which we want to find rhymes.
+     * @param maxResults return at most this many results per rhyme type. For no limit, pass -1.
+     * @param executor   runs the lookups of groups of rhyming syllables.
+     * @return the RhymeResults of each word, as returned by {@link #getRhymingWords(String, int)}, in the order of
+     * the given words. A word which is given several times has one entry.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the results.
+     */
+    public Map<String, List<RhymeResult>> getRhymingWords(Collection<String> words, int maxResults, Executor executor)
+            throws InterruptedException {
+        RhymerListener listener = this.listener;
+        if (listener == null) return findRhymingWords(words, maxResults, executor);
+        long start = System.nanoTime();
+        Map<String, List<RhymeResult>> results = findRhymingWords(words, maxResults, executor);
+        listener.onQuery(null, System.nanoTime() - start);
+        return results;
+    }
+
+    private Map<String, List<RhymeResult>> findRhymingWords(Collection<String> words, int maxResults, Executor executor)
+            throws InterruptedException {
+        final Batch batch = new Batch(words, maxResults);
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < batch.wordVariants.size(); from += BATCH_TASK_SIZE) {
+            final int fromIndex = from;
+            final int toIndex = Math.min(from + BATCH_TASK_SIZE, batch.wordVariants.size());
+            FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    batch.findRhymes(fromIndex, toIndex);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            executor.execute(task);
+        }
+        try {
+            for (FutureTask<Void> task : tasks) task.get();
+        } catch (ExecutionException e) {
+            for (FutureTask<Void> task : tasks) task.cancel(false);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        return batch.getResults();
+    }
+
+    /**
+     * @return one cursor per word variant (pronunciation), over the rhymes of the given type, in alphabetical order.
+     * Words which aren't in the dictionary have no cursors.
+     */
+    public List<RhymeCursor> getRhymeCursors(String word, RhymeType rhymeType) {
+        List<RhymeCursor> cursors = new ArrayList<>();
+        String lookupWord = word.toLowerCase(Locale.US);
+        List<WordVariant> wordVariants = lookUpWordVariants(lookupWord);
+        if (wordVariants == null) return cursors;
+        int wordId = getWordId(lookupWord);
+        for (WordVariant wordVariant : wordVariants) {
+            cursors.add(getRhymeCursors(wordVariant, wordId)[rhymeType.ordinal()]);
+        }
+        return cursors;
+    }
+
+    /**
+     * @return the cursors of each rhyme type of the given word variant, in the order of the {@link RhymeType}s.
+     */
+    private RhymeCursor[] getRhymeCursors(WordVariant wordVariant, int wordId) {
+        IntBuffer matches0 = getWordsWithLastStressSyllable(wordVariant.lastStressRhymingSyllables);
+        IntBuffer matches1 = null;
+        IntBuffer matches2 = null;
+        IntBuffer matches3 = null;
+        if (wordVariant.lastRhymingSyllable != null) {
+            matches1 = getWordsWithLastSyllable(wordVariant.lastRhymingSyllable);
+        }
+        if (wordVariant.lastTwoRhymingSyllables != null) {
+            matches2 = getWordsWithLastTwoSyllables(wordVariant.lastTwoRhymingSyllables);
+        }
+        if (wordVariant.lastThreeRhymingSyllables != null) {
+            matches3 = getWordsWithLastThreeSyllables(wordVariant.lastThreeRhymingSyllables);
+        }
+
+        RhymerListener listener = this.listener;
+        if (listener != null) {
+            listener.onRhymeGroup(RhymeType.STRICT, matches0 == null ? 0 : matches0.limit());
+            listener.onRhymeGroup(RhymeType.ONE_SYLLABLE, matches1 == null ? 0 : matches1.limit());
+            listener.onRhymeGroup(RhymeType.TWO_SYLLABLES, matches2 == null ? 0 : matches2.limit());
+            listener.onRhymeGroup(RhymeType.THREE_SYLLABLES, matches3 == null ? 0 : matches3.limit());
+        }
+
+        // The posting lists returned by the index are shared between queries: we never modify them.
+        // Each rhyme type only keeps the words which aren't already in a better rhyme type.
+        int variantNumber = wordVariant.variantNumber;
+        return new RhymeCursor[]{
+                new RhymeCursor(this, variantNumber, RhymeType.STRICT, matches0, wordId),
+                new RhymeCursor(this, variantNumber, RhymeType.ONE_SYLLABLE, matches1, wordId, matches0, matches2, matches3),
+                new RhymeCursor(this, variantNumber, RhymeType.TWO_SYLLABLES, matches2, wordId, matches0, matches3),
+                new RhymeCursor(this, variantNumber, RhymeType.THREE_SYLLABLES, matches3, wordId, matches0)};
+    }
+
+    /**
+     * @param wordId the id of the word to leave out of the results, or -1.
+     * @param offset the number of rhymes to skip, per rhyme type.
+     * @param limit  return at most this many rhymes per rhyme type. For no limit, pass -1.
+     * @return the ids of the strict, one-syllable, two-syllable and three-syllable rhymes of the given word variant.
+     */
+    int[][] getRhymingWordIds(WordVariant wordVariant, int wordId, int offset, int limit) {
+        RhymeCursor[] cursors = getRhymeCursors(wordVariant, wordId);
+        int[][] wordIds = new int[cursors.length][];
+        for (int i = 0; i < cursors.length; i++) {
+            // Some words, like "puppy", match way too many words.... any word
+            // ending with an "ee" sound (IY0 phone).
+            // TODO maybe there is a better way to solve this problem.
+            if (limit == 0) {
+                wordIds[i] = new int[0];
+            } else {
+                cursors[i].skip(offset);
+                wordIds[i] = cursors[i].nextWordIds(limit);
             }
+        }
+        return wordIds;
+    }
+
+    /**
+     * @param wordIds the ids of the strict, one-syllable, two-syllable and three-syllable rhymes.
+     * @param wordId  the id of a word to leave out of the result, or -1.
+     * @param limit   keep at most this many words per rhyme type. For no limit, pass -1.
+     * @return the RhymeResult with these rhymes, or null if there are no rhymes.
+     */
+    RhymeResult toRhymeResult(int variantNumber, int[][] wordIds, int wordId, int limit) {
+        String[] strictRhymes = getWords(wordIds[0], wordId, limit);
+        String[] oneSyllableRhymes = getWords(wordIds[1], wordId, limit);
+        String[] twoSyllableRhymes = getWords(wordIds[2], wordId, limit);
+        String[] threeSyllableRhymes = getWords(wordIds[3], wordId, limit);
 
-            matches0.remove(word);
-            matches1.remove(word);
-            matches2.remove(word);
-            matches3.remove(word);
-
-            matches1.removeAll(matches0);
-            matches2.removeAll(matches0);
-            matches3.removeAll(matches0);
-
-            if (!matches0.isEmpty()
-                    || !matches1.isEmpty()
-                    || !matches2.isEmpty()
-                    || !matches3.isEmpty()) {
-                RhymeResult result = new RhymeResult(wordVariant.variantNumber,
-                        toArray(matches0, maxResults),
-                        toArray(matches1, maxResults),
-                        toArray(matches2, maxResults),
-                        toArray(matches3, maxResults));
-                results.add(result);
+        if (strictRhymes.length > 0
+                || oneSyllableRhymes.length > 0
+                || twoSyllableRhymes.length > 0
+                || threeSyllableRhymes.length > 0) {
+            return new RhymeResult(variantNumber,
+                    strictRhymes,
+                    oneSyllableRhymes,
+                    twoSyllableRhymes,
+                    threeSyllableRhymes);
+        }
+        return null;
+    }
+
+    /**
+     * @return the words with the given ids, except the word with the given id, and at most limit words.
+     * For no limit, pass -1.
+     */
+    private String[] getWords(int[] wordIds, int wordId, int limit) {
+        int size = wordIds.length;
+        // The word only needs to be left out if it's one of the words we keep.
+        int end = limit < 0 ? size : Math.min(size, limit + 1);
+        for (int i = 0; i < end; i++) {
+            if (wordIds[i] == wordId) {
+                size--;
+                break;
             }
         }
-        return results;
+        if (limit >= 0 && size > limit) size = limit;
+        String[] result = new String[size];
+        for (int i = 0, j = 0; j < size; i++) {
+            if (wordIds[i] != wordId) result[j++] = getWord(wordIds[i]);
+        }
+        return result;
     }
 
-    private static String[] toArray(Set<String> set, int limit) {
-        // Some words, like "puppy", match way too many words.... any word
-        // ending with an "ee" sound (IY0 phone).
-        // TODO maybe there is a better way to solve this problem.
+    void onDictionaryMiss(String lookupWord) {
+        RhymerListener listener = this.listener;
+        if (listener != null) listener.onDictionaryMiss(lookupWord);
+    }
 
-        if (limit < 0) return set.toArray(new String[set.size()]);
-        String[] result = new String[Math.min(set.size(), limit)];
-        int index = 0;
-        for (Iterator<String> iterator = set.iterator(); iterator.hasNext() && index < limit; index++) {
-            result[index] = iterator.next();
+    /**
+     * @return the best type of rhyme between any variants of two words, or null if they don't rhyme.  Like in the
+     * rhyme results, strict rhymes are the best, followed by the rhymes on three, two and one syllables.
+     */
+    static RhymeType getRhymeType(List<WordVariant> wordVariants1, List<WordVariant> wordVariants2) {
+        RhymeType result = null;
+        for (WordVariant wordVariant1 : wordVariants1) {
+            for (WordVariant wordVariant2 : wordVariants2) {
+                RhymeType rhymeType = getRhymeType(wordVariant1, wordVariant2);
+                if (rhymeType == RhymeType.STRICT) return rhymeType;
+                if (rhymeType != null && (result == null || rhymeType.ordinal() > result.ordinal())) result = rhymeType;
+            }
         }
         return result;
     }
 
+    private static RhymeType getRhymeType(WordVariant wordVariant1, WordVariant wordVariant2) {
+        if (equals(wordVariant1.lastStressRhymingSyllables, wordVariant2.lastStressRhymingSyllables)) {
+            return RhymeType.STRICT;
+        }
+        if (equals(wordVariant1.lastThreeRhymingSyllables, wordVariant2.lastThreeRhymingSyllables)) {
+            return RhymeType.THREE_SYLLABLES;
+        }
+        if (equals(wordVariant1.lastTwoRhymingSyllables, wordVariant2.lastTwoRhymingSyllables)) {
+            return RhymeType.TWO_SYLLABLES;
+        }
+        if (equals(wordVariant1.lastRhymingSyllable, wordVariant2.lastRhymingSyllable)) {
+            return RhymeType.ONE_SYLLABLE;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if both keys are equal and not null.
+     */
+    private static boolean equals(RhymeKey key1, RhymeKey key2) {
+        return key1 != null && key1.equals(key2);
+    }
+
+    /**
+     * @return the pronunciations of the word in the dictionary, or its guessed pronunciations if it isn't in the
+     * dictionary, or null if they can't be guessed.
+     */
+    List<WordVariant> lookUpWordVariants(String lookupWord) {
+        List<WordVariant> wordVariants = getWordVariants(lookupWord);
+        if (wordVariants != null) return wordVariants;
+        onDictionaryMiss(lookupWord);
+        PronunciationGuesser pronunciationGuesser = this.pronunciationGuesser;
+        return pronunciationGuesser == null ? null : pronunciationGuesser.guessWordVariants(this, lookupWord);
+    }
+
     protected abstract List<WordVariant> getWordVariants(String word);
-    protected abstract SortedSet<String> getWordsWithLastStressSyllable(String lastStressSyllable);
-    protected abstract SortedSet<String> getWordsWithLastSyllable(String lastSyllable);
-    protected abstract SortedSet<String> getWordsWithLastTwoSyllables(String lastTwoSyllables);
-    protected abstract SortedSet<String> getWordsWithLastThreeSyllables(String lastThreeSyllables);
 
+    /**
+     * @return the id of the given word, or -1 if the word isn't in the dictionary.
+     */
+    protected abstract int getWordId(String word);
+
+    /**
+     * @return the word with the given id.
+     */
+    protected abstract String getWord(int wordId);
+
+    /**
+     * @return the sorted ids of the words having the given last stressed syllables, or null if no word has them.
+     */
+    protected abstract IntBuffer getWordsWithLastStressSyllable(RhymeKey lastStressSyllable);
 
+    /**
+     * @return the sorted ids of the words having the given last syllable, or null if no word has it.
+     */
+    protected abstract IntBuffer getWordsWithLastSyllable(RhymeKey lastSyllable);
+
+    /**
+     * @return the sorted ids of the words having the given last two syllables, or null if no word has them.
+     */
+    protected abstract IntBuffer getWordsWithLastTwoSyllables(RhymeKey lastTwoSyllables);
+
+    /**
+     * @return the sorted ids of the words having the given last three syllables, or null if no word has them.
+     */
+    protected abstract IntBuffer getWordsWithLastThreeSyllables(RhymeKey lastThreeSyllables);
+
+    /**
+     * The state of a query for several words.
+     * <p/>
+     * The rhymes of a word variant only depend on its rhyming keys, except that a word doesn't rhyme with itself.
+     * We find the ids of the rhymes once for each distinct set of rhyming keys, including the word itself and one
+     * extra word per rhyme type, and then leave each word out of its own rhymes.
+     */
+    private class Batch {
+        private final Map<String, String> lookupWords = new LinkedHashMap<>();
+        private final Map<String, List<WordVariant>> variantsByWord = new HashMap<>();
+        private final Map<List<RhymeKey>, Integer> wordVariantIds = new HashMap<>();
+        private final List<WordVariant> wordVariants = new ArrayList<>();
+        private final int[][][] sharedWordIds;
+        private final int maxResults;
+
+        Batch(Collection<String> words, int maxResults) {
+            this.maxResults = maxResults;
+            for (String word : words) {
+                if (lookupWords.containsKey(word)) continue;
+                String lookupWord = word.toLowerCase(Locale.US);
+                lookupWords.put(word, lookupWord);
+                List<WordVariant> variants = lookUpWordVariants(lookupWord);
+                if (variants == null) continue;
+                variantsByWord.put(word, variants);
+                for (WordVariant wordVariant : variants) {
+                    List<RhymeKey> keys = wordVariant.getKeys();
+                    if (!wordVariantIds.containsKey(keys)) {
+                        wordVariantIds.put(keys, wordVariants.size());
+                        wordVariants.add(wordVariant);
+                    }
+                }
+            }
+            sharedWordIds = new int[wordVariants.size()][][];
+        }
+
+        /**
+         * Find the rhymes of the distinct word variants between fromIndex (inclusive) and toIndex (exclusive).
+         * Tasks working on different ranges may run concurrently.
+         */
+        void findRhymes(int fromIndex, int toIndex) {
+            int limit = maxResults < 0 ? -1 : maxResults + 1;
+            for (int i = fromIndex; i < toIndex; i++) {
+                sharedWordIds[i] = getRhymingWordIds(wordVariants.get(i), -1, 0, limit);
+            }
+        }
+
+        Map<String, List<RhymeResult>> getResults() {
+            Map<String, List<RhymeResult>> results = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : lookupWords.entrySet()) {
+                String lookupWord = entry.getValue();
+                List<RhymeResult> wordResults = new ArrayList<>();
+                List<WordVariant> variants = variantsByWord.get(entry.getKey());
+                if (variants != null) {
+                    int wordId = getWordId(lookupWord);
+                    for (WordVariant wordVariant : variants) {
+                        int[][] wordIds = sharedWordIds[wordVariantIds.get(wordVariant.getKeys())];
+                        RhymeResult result = toRhymeResult(wordVariant.variantNumber, wordIds, wordId, maxResults);
+                        if (result != null) wordResults.add(result);
+                    }
+                }
+                results.put(entry.getKey(), wordResults);
+            }
+            return results;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+/**
+ * Receives measurements from a {@link Rhymer}, to monitor it.
+ * <p/>
+ * The methods are called on the threads which load and query the rhymer: they should be quick, and thread-safe if
+ * the rhymer is queried from multiple threads.  Without a listener, a rhymer doesn't measure anything.
+ *
+ * @see Rhymer#setListener(RhymerListener)
+ * @see RhymerStats
+ */
+public interface RhymerListener {
+
+    /**
+     * The steps of loading a rhymer.
+     */
+    enum LoadPhase {
+        /**
+         * Reading the phones of the dictionary.
+         */
+        READ_PHONES,
+
+        /**
+         * Parsing the words of the dictionary.
+         */
+        READ_WORDS,
+
+        /**
+         * Building a syllable index.  Indexes which are built on first use are built during a query.
+         */
+        BUILD_INDEX
+    }
+
+    /**
+     * Called when a step of loading the rhymer is done.
+     */
+    void onLoadPhase(LoadPhase loadPhase, long durationNanos);
+
+    /**
+     * Called when the rhymer has found the rhymes of a word, or of several words, or found out if words rhyme.
+     *
+     * @param word the word of the query, the first word for {@link Rhymer#doRhyme(String, String)}, or null for a
+     *             query of several words, like {@link Rhymer#getRhymingWords(java.util.Collection, int)} and
+     *             {@link Rhymer#doRhyme(java.util.List, java.util.List)}: the whole query is measured once.
+     */
+    void onQuery(String word, long durationNanos);
+
+    /**
+     * Called when the rhymer was queried for a word which isn't in the dictionary.
+     */
+    void onDictionaryMiss(String word);
+
+    /**
+     * Called for each type of rhymes of a word variant, before the rhymes are found.
+     *
+     * @param size the number of words which have the key of the word variant for this type of rhyme: the rhymes are
+     *             found among these words.  This is before the words which are in better rhyme types and the words
+     *             beyond the maximum number of results are left out.
+     */
+    void onRhymeGroup(RhymeType rhymeType, int size);
+}
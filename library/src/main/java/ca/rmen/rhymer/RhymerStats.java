@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A listener which keeps statistics of a rhymer: histograms of the query latencies and of the sizes of the rhyme
+ * groups, the number of dictionary misses, and the duration of each phase of the load.
+ * <p/>
+ * The histograms have one bucket per power of two: bucket i counts the values between 2^(i-1) (inclusive) and
+ * 2^i (exclusive), and bucket 0 counts the values of 0.  Recording a value doesn't allocate any memory.
+ */
+public class RhymerStats implements RhymerListener {
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLongArray[] rhymeGroupHistograms = new AtomicLongArray[RhymeType.values().length];
+    private final AtomicLong dictionaryMissCount = new AtomicLong();
+    private final AtomicLongArray loadPhaseDurations = new AtomicLongArray(LoadPhase.values().length);
+
+    public RhymerStats() {
+        for (int i = 0; i < rhymeGroupHistograms.length; i++) {
+            rhymeGroupHistograms[i] = new AtomicLongArray(BUCKET_COUNT);
+        }
+    }
+
+    @Override
+    public void onLoadPhase(LoadPhase loadPhase, long durationNanos) {
+        loadPhaseDurations.addAndGet(loadPhase.ordinal(), durationNanos);
+    }
+
+    @Override
+    public void onQuery(String word, long durationNanos) {
+        latencyHistogram.incrementAndGet(getBucket(durationNanos));
+    }
+
+    @Override
+    public void onDictionaryMiss(String word) {
+        dictionaryMissCount.incrementAndGet();
+    }
+
+    @Override
+    public void onRhymeGroup(RhymeType rhymeType, int size) {
+        rhymeGroupHistograms[rhymeType.ordinal()].incrementAndGet(getBucket(size));
+    }
+
+    /**
+     * @return the number of queries in each bucket of query duration, in nanoseconds.
+     */
+    public long[] getLatencyHistogram() {
+        return toArray(latencyHistogram);
+    }
+
+    /**
+     * @return the number of word variants in each bucket of rhyme group size, for the given type of rhymes.
+     * @see RhymerListener#onRhymeGroup(RhymeType, int)
+     */
+    public long[] getRhymeGroupHistogram(RhymeType rhymeType) {
+        return toArray(rhymeGroupHistograms[rhymeType.ordinal()]);
+    }
+
+    public long getQueryCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) count += latencyHistogram.get(i);
+        return count;
+    }
+
+    public long getDictionaryMissCount() {
+        return dictionaryMissCount.get();
+    }
+
+    /**
+     * @return the total duration of the given phase of the load, in nanoseconds.
+     */
+    public long getLoadPhaseDuration(LoadPhase loadPhase) {
+        return loadPhaseDurations.get(loadPhase.ordinal());
+    }
+
+    /**
+     * @return the bucket of the histograms which counts the given value.
+     */
+    public static int getBucket(long value) {
+        return value <= 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] result = new long[histogram.length()];
+        for (int i = 0; i < result.length; i++) result[i] = histogram.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.io.Serializable;
+
+/**
+ * The slant rhymes of one variant of a word: words whose last stressed syllables have the same phones as the
+ * variant, except for one phone, which is replaced by another phone of the same {@link PhoneType}.
+ * For example, TIME (T AY1 M) and LINE (L AY1 N), where the nasal M is replaced by the nasal N.
+ */
+public class SlantRhymeResult implements Serializable {
+    /**
+     * The variant of the word.
+     * @see RhymeResult#variantNumber
+     */
+    public final int variantNumber;
+
+    /**
+     * The words which are slant rhymes of the word variant, in alphabetical order.  The words which are strict rhymes
+     * of the word variant are not slant rhymes.
+     */
+    public final String[] slantRhymes;
+
+    public SlantRhymeResult(int variantNumber, String[] slantRhymes) {
+        this.variantNumber = variantNumber;
+        this.slantRhymes = slantRhymes;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Guesses the pronunciation of a word from the known words which end with the same letters: "yeeted" is pronounced
+ * like "greeted" from its last stressed vowel.
+ * <p/>
+ * The guess borrows the rhyming keys of the known words which share the longest suffix with the word.  If there are
+ * several of them, it takes the most frequent strict rhyming key among the closest ones.  The keys of more syllables
+ * than the suffix has may be wrong: this is an approximation, much cheaper than guessing the pronunciation of each
+ * letter.  The index of the spellings is built the first time a word is guessed, and a guess takes a few
+ * microseconds.
+ * <p/>
+ * The words are the ones of the {@link MemoryRhymer} which looks up the word, so the same guesser can be set on
+ * the rhymers returned by {@link MemoryRhymer#update}: they guess from their own words.  Other rhymers only use the
+ * fallback guesser.
+ * <p/>
+ * When no known word shares enough letters with the word, the guess is delegated to another guesser, for example
+ * a {@link ca.rmen.rhymer.cmu.LetterToPhoneModel}.
+ */
+public class SpellingGuesser implements PronunciationGuesser {
+    // The number of known words which vote for the rhyming key.
+    private static final int MAX_VOTES = 8;
+
+    private final int minSuffixLength;
+    private final PronunciationGuesser fallback;
+
+    /**
+     * @param minSuffixLength the number of last letters which a known word must share with a word, to guess its
+     *                        pronunciation.  The shared letters must also contain a vowel.
+     * @param fallback        guesses the pronunciations of the words which don't share enough letters with a known
+     *                        word, or null.
+     */
+    public SpellingGuesser(int minSuffixLength, PronunciationGuesser fallback) {
+        if (minSuffixLength <= 0) throw new IllegalArgumentException("Invalid suffix length: " + minSuffixLength);
+        this.minSuffixLength = minSuffixLength;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public List<WordVariant> guessWordVariants(Rhymer rhymer, String word) {
+        if (rhymer instanceof MemoryRhymer) {
+            WordVariant wordVariant = guessWordVariant((MemoryRhymer) rhymer, word);
+            if (wordVariant != null) return Collections.singletonList(wordVariant);
+        }
+        return fallback == null ? null : fallback.guessWordVariants(rhymer, word);
+    }
+
+    /**
+     * @return the first pronunciation of a word of the rhymer sharing the longest suffix with the given word, or
+     * null if no word of the rhymer shares enough letters.
+     */
+    private WordVariant guessWordVariant(MemoryRhymer rhymer, String word) {
+        SpellingIndex index = rhymer.getSpellingIndex();
+        int suffixLength = index.getLongestSharedSuffix(word);
+        if (suffixLength < minSuffixLength || !hasVowel(word, suffixLength)) return null;
+        WordVariant result = null;
+        int bestVotes = 0;
+        Map<RhymeKey, Integer> votes = new HashMap<>();
+        for (int wordId : index.getWordIds(word, suffixLength, MAX_VOTES)) {
+            WordVariant wordVariant = rhymer.getWordVariants(rhymer.getWord(wordId)).get(0);
+            Integer previousVotes = votes.get(wordVariant.lastStressRhymingSyllables);
+            int wordVotes = previousVotes == null ? 1 : previousVotes + 1;
+            votes.put(wordVariant.lastStressRhymingSyllables, wordVotes);
+            if (wordVotes > bestVotes) {
+                bestVotes = wordVotes;
+                result = wordVariant;
+            }
+        }
+        return result == null ? null : new WordVariant(0, result.lastStressRhymingSyllables, result.lastRhymingSyllable,
+                result.lastTwoRhymingSyllables, result.lastThreeRhymingSyllables);
+    }
+
+    private static boolean hasVowel(String word, int suffixLength) {
+        for (int i = word.length() - suffixLength; i < word.length(); i++) {
+            if ("aeiouy".indexOf(word.charAt(i)) >= 0) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Finds the words which end with given letters.
+ * <p/>
+ * Like {@link EndingIndex}, this is a trie of the reversed spellings of the words, flattened into an array: the word
+ * ids are sorted by the reversed spellings of their words, so the words which share their last letters are a
+ * contiguous range of the array.  The words themselves are only stored in the word table: the array only keeps
+ * the last letters of each word, packed into a long, and the word table is only read for longer suffixes.
+ */
+final class SpellingIndex {
+    // Each letter of a suffix takes 5 bits: 0 is before the start of the word.
+    private static final int LETTER_BITS = 5;
+    private static final int SUFFIX_LENGTH = 12;
+    private static final int UNUSED_BITS = Long.SIZE - SUFFIX_LENGTH * LETTER_BITS;
+    private final String[] wordTable;
+    // The word ids, sorted by the reversed spellings of the words, and the suffixes of these words.
+    private final int[] wordIds;
+    private final long[] suffixes;
+
+    SpellingIndex(final String[] wordTable) {
+        this.wordTable = wordTable;
+        final long[] wordSuffixes = new long[wordTable.length];
+        Integer[] sortedWordIds = new Integer[wordTable.length];
+        for (int wordId = 0; wordId < wordTable.length; wordId++) {
+            wordSuffixes[wordId] = getSuffix(wordTable[wordId]);
+            sortedWordIds[wordId] = wordId;
+        }
+        Arrays.sort(sortedWordIds, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer wordId1, Integer wordId2) {
+                long suffix1 = wordSuffixes[wordId1];
+                long suffix2 = wordSuffixes[wordId2];
+                return suffix1 != suffix2 ? Long.compare(suffix1, suffix2)
+                        : compareReversed(wordTable[wordId1], wordTable[wordId2]);
+            }
+        });
+        wordIds = new int[wordTable.length];
+        suffixes = new long[wordTable.length];
+        for (int i = 0; i < wordIds.length; i++) {
+            wordIds[i] = sortedWordIds[i];
+            suffixes[i] = wordSuffixes[wordIds[i]];
+        }
+    }
+
+    /**
+     * @return the largest number of letters, at the end of the given word, which another word also ends with.
+     */
+    int getLongestSharedSuffix(String word) {
+        long suffix = getSuffix(word);
+        // The word sharing the longest suffix is next to where the word would be in the sorted array.
+        int position = find(suffix, word);
+        int result = 0;
+        for (int i = Math.max(0, position - 1); i <= position + 1 && i < wordIds.length; i++) {
+            int sharedSuffix = getSharedSuffix(suffix, word, i);
+            if (sharedSuffix < word.length() || !wordTable[wordIds[i]].equals(word)) {
+                result = Math.max(result, sharedSuffix);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param letterCount the number of letters, at the end of the given word, which the words must have.
+     * @param limit       return at most this many word ids.
+     * @return the ids of other words ending with the last letterCount letters of the given word, starting with the
+     * words closest to it in the order of the reversed spellings.
+     */
+    int[] getWordIds(String word, int letterCount, int limit) {
+        int[] result = new int[limit];
+        int size = 0;
+        long suffix = getSuffix(word);
+        int position = find(suffix, word);
+        // Walk away from the position of the word in both directions, while the words share the suffix.
+        int before = position - 1;
+        int after = position;
+        while (size < limit) {
+            boolean hasBefore = before >= 0 && getSharedSuffix(suffix, word, before) >= letterCount;
+            boolean hasAfter = after < wordIds.length && getSharedSuffix(suffix, word, after) >= letterCount;
+            if (!hasBefore && !hasAfter) break;
+            if (hasAfter) {
+                if (!wordTable[wordIds[after]].equals(word)) result[size++] = wordIds[after];
+                after++;
+            }
+            if (hasBefore && size < limit) result[size++] = wordIds[before--];
+        }
+        return size == limit ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return the position of the first word which doesn't come before the given word, in the order of the reversed
+     * spellings.
+     */
+    private int find(long suffix, String word) {
+        int low = 0;
+        int high = wordIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = suffixes[middle] != suffix ? Long.compare(suffixes[middle], suffix)
+                    : compareReversed(wordTable[wordIds[middle]], word);
+            if (comparison < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return the number of last letters which the given word shares with the word at the given position.
+     */
+    private int getSharedSuffix(long suffix, String word, int position) {
+        // The suffixes are in the lowest bits of the longs.
+        int sharedSuffix = (Long.numberOfLeadingZeros(suffix ^ suffixes[position]) - UNUSED_BITS) / LETTER_BITS;
+        return sharedSuffix < SUFFIX_LENGTH ? sharedSuffix : getSharedSuffix(word, wordTable[wordIds[position]]);
+    }
+
+    /**
+     * @return the last letters of the word, in the lowest bits, from the last letter in the highest of these bits.
+     */
+    private static long getSuffix(String word) {
+        long suffix = 0;
+        for (int i = 1; i <= SUFFIX_LENGTH; i++) {
+            suffix = suffix << LETTER_BITS | (i <= word.length() ? getLetter(word.charAt(word.length() - i)) : 0);
+        }
+        return suffix;
+    }
+
+    private static int getLetter(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        switch (c) {
+            case '\'':
+                return 27;
+            case '-':
+                return 28;
+            case '.':
+                return 29;
+            case '_':
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int compareReversed(String word1, String word2) {
+        int length = Math.min(word1.length(), word2.length());
+        for (int i = 1; i <= length; i++) {
+            int diff = word1.charAt(word1.length() - i) - word2.charAt(word2.length() - i);
+            if (diff != 0) return diff;
+        }
+        return word1.length() - word2.length();
+    }
+
+    private static int getSharedSuffix(String word1, String word2) {
+        int length = Math.min(word1.length(), word2.length());
+        int i = 0;
+        while (i < length && word1.charAt(word1.length() - 1 - i) == word2.charAt(word2.length() - 1 - i)) i++;
+        return i;
+    }
+}
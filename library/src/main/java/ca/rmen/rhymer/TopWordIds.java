@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+/**
+ * Keeps the ids of the words with the best scores, in a bounded heap.
+ * <p/>
+ * The root of the heap is the worst of the kept words, so that a better word replaces it in O(log capacity).
+ * Among words with the same score, the word with the smaller id (first in alphabetical order) is better.
+ */
+final class TopWordIds {
+    private final int[] wordIds;
+    private final double[] scores;
+    private int size;
+
+    TopWordIds(int capacity) {
+        wordIds = new int[capacity];
+        scores = new double[capacity];
+    }
+
+    void add(int wordId, double score) {
+        if (size < wordIds.length) {
+            wordIds[size] = wordId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && isWorse(wordIds[0], scores[0], wordId, score)) {
+            wordIds[0] = wordId;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Empty the heap.
+     *
+     * @return the kept word ids, best first.
+     */
+    int[] toSortedArray() {
+        // Heap sort: move the worst word to the end, until the heap is empty.
+        int count = size;
+        while (size > 1) {
+            swap(0, --size);
+            siftDown(0, size);
+        }
+        size = 0;
+        int[] result = new int[count];
+        System.arraycopy(wordIds, 0, result, 0, count);
+        return result;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!isWorse(wordIds[index], scores[index], wordIds[parent], scores[parent])) break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int heapSize) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && isWorse(wordIds[left], scores[left], wordIds[worst], scores[worst])) worst = left;
+            if (right < heapSize && isWorse(wordIds[right], scores[right], wordIds[worst], scores[worst])) worst = right;
+            if (worst == index) return;
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int wordId = wordIds[i];
+        wordIds[i] = wordIds[j];
+        wordIds[j] = wordId;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private static boolean isWorse(int wordId1, double score1, int wordId2, double score2) {
+        int comparison = Double.compare(score1, score2);
+        return comparison < 0 || comparison == 0 && wordId1 > wordId2;
+    }
+}
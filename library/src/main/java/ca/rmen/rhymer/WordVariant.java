@@ -19,6 +19,9 @@
 
 package ca.rmen.rhymer;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Some words have multiple entries in the dictionary, for multiple pronunciations:
  * ex:
@@ -33,16 +36,57 @@ public class WordVariant {
      */
     public final int variantNumber;
 
-    public final String lastStressRhymingSyllables;
-    public final String lastRhymingSyllable;
-    public final String lastTwoRhymingSyllables;
-    public final String lastThreeRhymingSyllables;
+    /**
+     * The phones from the last stressed syllable to the end of the word.
+     */
+    public final RhymeKey lastStressRhymingSyllables;
+
+    /**
+     * The phones of the last syllable, starting at its vowel.
+     */
+    public final RhymeKey lastRhymingSyllable;
+
+    /**
+     * The phones of the last two syllables, starting at the vowel of the first one, or null if the word has
+     * fewer syllables.
+     */
+    public final RhymeKey lastTwoRhymingSyllables;
+
+    /**
+     * The phones of the last three syllables, starting at the vowel of the first one, or null if the word has
+     * fewer syllables.
+     */
+    public final RhymeKey lastThreeRhymingSyllables;
 
-    public WordVariant(int variantNumber, String lastStressRhymingSyllables, String lastRhymingSyllable, String lastTwoRhymingSyllables, String lastThreeRhymingSyllables) {
+    public WordVariant(int variantNumber, RhymeKey lastStressRhymingSyllables, RhymeKey lastRhymingSyllable, RhymeKey lastTwoRhymingSyllables, RhymeKey lastThreeRhymingSyllables) {
         this.variantNumber = variantNumber;
         this.lastStressRhymingSyllables = lastStressRhymingSyllables;
         this.lastRhymingSyllable = lastRhymingSyllable;
         this.lastTwoRhymingSyllables = lastTwoRhymingSyllables;
         this.lastThreeRhymingSyllables = lastThreeRhymingSyllables;
     }
+
+    /**
+     * @return the phone codes of the whole pronunciation, or null if the variant has no keys.  The keys of the
+     * variants of a dictionary are the ends of one array of these phones: for other keys, this is the array of the
+     * longest key.  The array must not be modified.
+     */
+    byte[] getPronunciation() {
+        RhymeKey longestKey = null;
+        for (RhymeKey key : getKeys()) {
+            if (key != null && (longestKey == null || key.length() > longestKey.length())) longestKey = key;
+        }
+        return longestKey == null ? null : longestKey.getAllPhones();
+    }
+
+    /**
+     * @return the keys of the variant, in the order of the {@link RhymeType}s. Variants with equal keys have the
+     * same rhymes.
+     */
+    List<RhymeKey> getKeys() {
+        return Arrays.asList(lastStressRhymingSyllables,
+                lastRhymingSyllable,
+                lastTwoRhymingSyllables,
+                lastThreeRhymingSyllables);
+    }
 }
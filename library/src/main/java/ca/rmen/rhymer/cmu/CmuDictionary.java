@@ -19,22 +19,34 @@
 
 package ca.rmen.rhymer.cmu;
 
+import ca.rmen.rhymer.MappedRhymer;
 import ca.rmen.rhymer.MemoryRhymer;
-import ca.rmen.rhymer.PhoneType;
+import ca.rmen.rhymer.PhoneTable;
+import ca.rmen.rhymer.RhymeKey;
+import ca.rmen.rhymer.RhymeType;
 import ca.rmen.rhymer.Rhymer;
+import ca.rmen.rhymer.RhymerListener;
 import ca.rmen.rhymer.WordVariant;
 
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 public class CmuDictionary {
 
     private static final String VERSION = "cmudict-0.7b";
     private static final String ROOT_FOLDER = "/dictionary_files/";
-    private static final String WORDS_FILE = ROOT_FOLDER + VERSION;
+    static final String WORDS_FILE = ROOT_FOLDER + VERSION;
     private static final String PHONES_FILE = ROOT_FOLDER + VERSION + ".phones";
+    static final String INDEX_FILE = ROOT_FOLDER + VERSION + ".index";
+    static final String MODEL_FILE = ROOT_FOLDER + VERSION + ".l2p";
     private CmuDictionary() {
     }
 
@@ -44,14 +56,228 @@ public class CmuDictionary {
      * @return the Rhymer based on the CMU dictionary files.
      */
     public static Rhymer loadRhymer() throws IOException {
-        InputStream phonesFile = CmuDictionary.class.getResourceAsStream(PHONES_FILE);
-        InputStream wordsFile = CmuDictionary.class.getResourceAsStream(WORDS_FILE);
+        return loadRhymer(CmuDictionaryReader.read(getResource(WORDS_FILE)));
+    }
+
+    /**
+     * Build a rhymer based on the CMU dictionary files, using the threads of the given pool to parse the dictionary
+     * and to build the index. This returns the same rhymer as {@link #loadRhymer()}.
+     * @param pool the threads used to load the rhymer
+     * @throws IOException if we couldn't read the dictionary file
+     * @return the Rhymer based on the CMU dictionary files.
+     */
+    public static Rhymer loadRhymer(ForkJoinPool pool) throws IOException {
+        return loadRhymer(CmuDictionaryReader.read(getResource(WORDS_FILE)), pool);
+    }
+
+    /**
+     * Build a rhymer based on the CMU dictionary files, which only finds the given types of rhymes.
+     * The syllable index of each of these types is built the first time it is queried: this loads faster and uses
+     * less memory than {@link #loadRhymer()}, when only some types of rhymes are needed.
+     * @param rhymeTypes the types of rhymes to find
+     * @throws IOException if we couldn't read the dictionary file
+     * @return the Rhymer based on the CMU dictionary files.
+     * @see MemoryRhymer#MemoryRhymer(Set)
+     */
+    public static Rhymer loadRhymer(Set<RhymeType> rhymeTypes) throws IOException {
+        return loadRhymer(CmuDictionaryReader.read(getResource(WORDS_FILE)), null, new MemoryRhymer(rhymeTypes));
+    }
+
+    /**
+     * Build a rhymer based on the CMU dictionary files, and measure it with the given listener, from the start of
+     * the load.  This returns the same rhymer as {@link #loadRhymer()}.
+     * @param listener receives the duration of each phase of the load, and then the measurements of the queries.
+     * @throws IOException if we couldn't read the dictionary file
+     * @return the Rhymer based on the CMU dictionary files.
+     * @see Rhymer#setListener(RhymerListener)
+     */
+    public static Rhymer loadRhymer(RhymerListener listener) throws IOException {
         MemoryRhymer rhymer = new MemoryRhymer();
-        Map<String, PhoneType> symbolsMap = CmuDictionaryReader.readPhones(phonesFile);
-        SyllableParser syllableParser = new SyllableParser(symbolsMap);
-        Map<String, List<WordVariant>> wordsMap = CmuDictionaryReader.readWords(syllableParser, wordsFile);
-        rhymer.buildIndex(wordsMap);
+        rhymer.setListener(listener);
+        return loadRhymer(CmuDictionaryReader.read(getResource(WORDS_FILE)), null, rhymer);
+    }
+
+    /**
+     * Build a rhymer based on a dictionary in the format of the CMU dictionary, using the phones of the
+     * CMU dictionary.
+     * @param words the dictionary, encoded in UTF-8, between the position and the limit of the buffer. For large
+     *              dictionaries, this may be a memory-mapped file.
+     * @throws IOException if we couldn't read the phones of the CMU dictionary
+     * @throws IllegalArgumentException if the dictionary contains an invalid line
+     * @return the Rhymer based on the given dictionary.
+     */
+    public static Rhymer loadRhymer(ByteBuffer words) throws IOException {
+        return loadRhymer(words, null);
+    }
+
+    /**
+     * Build a rhymer based on a dictionary in the format of the CMU dictionary, using the phones of the
+     * CMU dictionary.
+     * @param words the dictionary, encoded in UTF-8, between the position and the limit of the buffer. For large
+     *              dictionaries, this may be a memory-mapped file.
+     * @param pool the threads used to parse the dictionary and to build the index, or null to do it on the calling
+     *             thread. The rhymer is the same in both cases.
+     * @throws IOException if we couldn't read the phones of the CMU dictionary
+     * @throws IllegalArgumentException if the dictionary contains an invalid line
+     * @return the Rhymer based on the given dictionary.
+     */
+    public static Rhymer loadRhymer(ByteBuffer words, ForkJoinPool pool) throws IOException {
+        return loadRhymer(words, pool, new MemoryRhymer());
+    }
+
+    /**
+     * Build a rhymer from several dictionaries in the format of the CMU dictionary, using the phones of the
+     * CMU dictionary.  Each dictionary is read once, and its pronunciations are added to the rhymer while it is
+     * parsed.  For example, to add the words of another dictionary to the CMU dictionary, with the pronunciations
+     * of the other dictionary instead of the ones of the CMU dictionary:
+     * <pre>
+     * CmuDictionary.loadRhymer(Arrays.asList(DictionarySource.cmuDictionary(), DictionarySource.fromFile(file)),
+     *         MergePolicy.REPLACE);
+     * </pre>
+     * @param sources the dictionaries, in order.
+     * @param mergePolicy what to do with the words which are in several dictionaries.
+     * @throws IOException if we couldn't read the phones of the CMU dictionary, or one of the dictionaries
+     * @throws IllegalArgumentException if a dictionary contains an invalid line
+     * @return the Rhymer based on the given dictionaries.
+     */
+    public static Rhymer loadRhymer(List<DictionarySource> sources, MergePolicy mergePolicy) throws IOException {
+        return loadRhymer(sources, mergePolicy, null);
+    }
+
+    /**
+     * Build a rhymer from several dictionaries in the format of the CMU dictionary, using the threads of the given
+     * pool to parse each dictionary and to build the index.
+     * @param pool the threads used to load the rhymer, or null to load it on the calling thread. The rhymer is the
+     *             same in both cases.
+     * @see #loadRhymer(List, MergePolicy)
+     */
+    public static Rhymer loadRhymer(List<DictionarySource> sources, MergePolicy mergePolicy, ForkJoinPool pool) throws IOException {
+        return loadRhymer(sources, mergePolicy, pool, new MemoryRhymer());
+    }
+
+    private static Rhymer loadRhymer(ByteBuffer words, ForkJoinPool pool, MemoryRhymer rhymer) throws IOException {
+        return loadRhymer(Collections.singletonList(DictionarySource.fromBuffer(words)), MergePolicy.APPEND, pool, rhymer);
+    }
+
+    private static Rhymer loadRhymer(List<DictionarySource> sources, MergePolicy mergePolicy, ForkJoinPool pool,
+                                     final MemoryRhymer rhymer) throws IOException {
+        RhymerListener listener = rhymer.getListener();
+        long start = listener == null ? 0 : System.nanoTime();
+        PhoneTable phoneTable = new PhoneTable(CmuDictionaryReader.readPhones(getResource(PHONES_FILE)));
+        if (listener != null) {
+            long end = System.nanoTime();
+            listener.onLoadPhase(RhymerListener.LoadPhase.READ_PHONES, end - start);
+            start = end;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            // The words of the first dictionary can't be in another one yet.
+            CmuDictionaryReader.WordVariantSink sink = i > 0 ? new MergingSink(rhymer, mergePolicy)
+                    : new CmuDictionaryReader.WordVariantSink() {
+                @Override
+                public void onWordVariant(String word, WordVariant wordVariant) {
+                    rhymer.addWordVariant(word, wordVariant);
+                }
+            };
+            sources.get(i).readWords(phoneTable, pool, sink);
+        }
+        if (listener != null) listener.onLoadPhase(RhymerListener.LoadPhase.READ_WORDS, System.nanoTime() - start);
+        rhymer.buildIndex(phoneTable, pool);
         return rhymer;
     }
-}
 
+    /**
+     * Load a model which guesses the pronunciations of words which aren't in the CMU dictionary, trained with the
+     * pronunciations of the CMU dictionary.  The model is generated at build time: if the library was built without
+     * it, it is trained now, which takes a few seconds.  To find the rhymes of these words:
+     * <pre>
+     * rhymer.setPronunciationGuesser(CmuDictionary.loadLetterToPhoneModel());
+     * </pre>
+     * @throws IOException if we couldn't read the model or the dictionary file
+     * @return the model trained with the CMU dictionary.
+     */
+    public static LetterToPhoneModel loadLetterToPhoneModel() throws IOException {
+        InputStream modelFile = CmuDictionary.class.getResourceAsStream(MODEL_FILE);
+        if (modelFile == null) return trainLetterToPhoneModel();
+        try {
+            PhoneTable phoneTable = new PhoneTable(CmuDictionaryReader.readPhones(getResource(PHONES_FILE)));
+            return LetterToPhoneModel.read(phoneTable, new BufferedInputStream(modelFile));
+        } finally {
+            modelFile.close();
+        }
+    }
+
+    /**
+     * @return a model trained with the CMU dictionary, like the one generated at build time.
+     */
+    static LetterToPhoneModel trainLetterToPhoneModel() throws IOException {
+        PhoneTable phoneTable = new PhoneTable(CmuDictionaryReader.readPhones(getResource(PHONES_FILE)));
+        return LetterToPhoneModel.train(phoneTable, CmuDictionaryReader.read(getResource(WORDS_FILE)));
+    }
+
+    /**
+     * Build a rhymer from the index of the CMU dictionary files, which is generated at build time.
+     * This finds the same rhymes as {@link #loadRhymer()}, but without parsing the dictionary files: the index is
+     * read into one buffer, and the queries are answered from it by a {@link MappedRhymer}, without decoding
+     * the words first.
+     * @throws IOException if we couldn't read the index file
+     * @return the Rhymer based on the CMU dictionary files.
+     */
+    public static Rhymer loadPrebuiltRhymer() throws IOException {
+        return new MappedRhymer(CmuDictionaryReader.read(getResource(INDEX_FILE)));
+    }
+
+    /**
+     * Adds the word variants of a dictionary to a rhymer which has the word variants of the dictionaries before it.
+     */
+    private static class MergingSink implements CmuDictionaryReader.WordVariantSink {
+        private final MemoryRhymer rhymer;
+        private final MergePolicy mergePolicy;
+        // The words of this dictionary, and the ones which are also in the dictionaries before it.
+        private final Set<String> words = new HashSet<>();
+        private final Set<String> mergedWords = new HashSet<>();
+
+        MergingSink(MemoryRhymer rhymer, MergePolicy mergePolicy) {
+            this.rhymer = rhymer;
+            this.mergePolicy = mergePolicy;
+        }
+
+        @Override
+        public void onWordVariant(String word, WordVariant wordVariant) {
+            if (words.add(word) && rhymer.getWordVariants(word) != null) {
+                if (mergePolicy == MergePolicy.REPLACE) rhymer.removeWordVariants(word);
+                else mergedWords.add(word);
+            }
+            if (!mergedWords.contains(word)) {
+                rhymer.addWordVariant(word, wordVariant);
+            } else if (mergePolicy == MergePolicy.APPEND) {
+                int variantNumber = 0;
+                for (WordVariant otherVariant : rhymer.getWordVariants(word)) {
+                    if (hasSameKeys(wordVariant, otherVariant)) return;
+                    variantNumber = Math.max(variantNumber, otherVariant.variantNumber + 1);
+                }
+                rhymer.addWordVariant(word, new WordVariant(variantNumber,
+                        wordVariant.lastStressRhymingSyllables,
+                        wordVariant.lastRhymingSyllable,
+                        wordVariant.lastTwoRhymingSyllables,
+                        wordVariant.lastThreeRhymingSyllables));
+            }
+        }
+
+        private static boolean hasSameKeys(WordVariant wordVariant1, WordVariant wordVariant2) {
+            return equals(wordVariant1.lastStressRhymingSyllables, wordVariant2.lastStressRhymingSyllables)
+                    && equals(wordVariant1.lastRhymingSyllable, wordVariant2.lastRhymingSyllable)
+                    && equals(wordVariant1.lastTwoRhymingSyllables, wordVariant2.lastTwoRhymingSyllables)
+                    && equals(wordVariant1.lastThreeRhymingSyllables, wordVariant2.lastThreeRhymingSyllables);
+        }
+
+        private static boolean equals(RhymeKey key1, RhymeKey key2) {
+            return key1 == null ? key2 == null : key1.equals(key2);
+        }
+    }
+
+    static InputStream getResource(String path) throws FileNotFoundException {
+        InputStream is = CmuDictionary.class.getResourceAsStream(path);
+        if (is == null) throw new FileNotFoundException("Missing resource " + path);
+        return is;
+    }
+}
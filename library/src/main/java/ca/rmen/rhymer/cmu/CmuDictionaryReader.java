@@ -19,23 +19,32 @@
 
 package ca.rmen.rhymer.cmu;
 
+import ca.rmen.rhymer.PhoneTable;
 import ca.rmen.rhymer.PhoneType;
 import ca.rmen.rhymer.WordVariant;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 class CmuDictionaryReader {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MIN_CHUNK_SIZE = 65536;
+    private static final int STREAM_CHUNK_SIZE = 1 << 20;
+
     private CmuDictionaryReader() {
         // Prevent instantiation of a utility class
     }
@@ -57,59 +66,280 @@ class CmuDictionaryReader {
         return phones;
     }
 
-    static Map<String, List<WordVariant>> readWords(SyllableParser syllableParser, InputStream is) throws IOException {
-        Map<String, List<WordVariant>> words = new HashMap<>();
-        BufferedReader bufferedReader = null;
-        try {
-            bufferedReader = new BufferedReader(new InputStreamReader(is));
-            Pattern pattern = Pattern.compile("(^.*)\\(([0-9])\\).*$");
-            for (String line = bufferedReader.readLine(); line != null; line = bufferedReader.readLine()) {
-                if (line.isEmpty()) continue;
-                if (line.startsWith(";;;")) continue;
-                int wordSeparator = line.indexOf("  ");
-                String word = line.substring(0, wordSeparator).toLowerCase(Locale.US);
+    /**
+     * Parse the pronunciations of a dictionary, in one pass over the given buffer.
+     * <p/>
+     * Each line contains a word, two spaces, and the phone symbols of one pronunciation of the word, separated by
+     * spaces. The second and following pronunciations of a word have their variant number after the word, between
+     * parentheses. Example: TOMATO(1)  T AH0 M AA1 T OW2
+     * Lines starting with ;;; are comments.
+     *
+     * @param buffer the dictionary, encoded in UTF-8, between its position and its limit. The position of the
+     *               buffer isn't modified.
+     * @param sink   receives the word variants, in the order of the dictionary.
+     * @throws IllegalArgumentException if a line doesn't have a word and a pronunciation, or contains an unknown phone.
+     */
+    static void readWords(final SyllableParser syllableParser, ByteBuffer buffer, final WordVariantSink sink) {
+        readPronunciations(buffer, new PronunciationSink() {
+            @Override
+            public void onPronunciation(String word, int variantNumber, CharSequence pronunciation, int start, int end) {
+                sink.onWordVariant(word, syllableParser.parseWordVariant(variantNumber, pronunciation, start, end));
+            }
+        });
+    }
+
+    /**
+     * Read the pronunciations of a dictionary, in one pass over the given buffer, without parsing their phones.
+     *
+     * @see #readWords(SyllableParser, ByteBuffer, WordVariantSink)
+     */
+    static void readPronunciations(ByteBuffer buffer, PronunciationSink sink) {
+        AsciiSequence chars = new AsciiSequence(buffer);
+        char[] wordChars = new char[64];
+        int limit = buffer.limit();
+        int lineStart = buffer.position();
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+            if (lineEnd > lineStart && !isComment(buffer, lineStart, lineEnd)) {
+                int wordSeparator = indexOfWordSeparator(buffer, lineStart, lineEnd);
+                if (wordSeparator < 0) throw new IllegalArgumentException("Invalid line: " + decode(buffer, lineStart, lineEnd));
+
+                // A variant number: WORD(1)
+                int wordEnd = wordSeparator;
                 int variantNumber = 0;
-                Matcher matcher = pattern.matcher(word);
-                if(matcher.matches()) {
-                    word = matcher.group(1);
-                    variantNumber = Integer.valueOf(matcher.group(2));
+                if (buffer.get(wordEnd - 1) == ')') {
+                    int variantStart = wordEnd - 1;
+                    while (variantStart > lineStart && isDigit(buffer.get(variantStart - 1))) variantStart--;
+                    if (variantStart < wordEnd - 1 && variantStart - 1 > lineStart && buffer.get(variantStart - 1) == '(') {
+                        variantNumber = parseInt(buffer, variantStart, wordEnd - 1);
+                        wordEnd = variantStart - 1;
+                    }
                 }
-                String[] phones = line.substring(wordSeparator+2).split(" ");
-                String[] syllables = syllableParser.extractRhymingSyllables(phones);
-                String lastStressRhymingSyllables = syllableParser.extractStressRhymingSyllables(phones);
-                String lastRhymingSyllable = concatenateLastSyllables(syllables, 1);
-                String lastTwoRhymingSyllables = concatenateLastSyllables(syllables, 2);
-                String lastThreeRhymingSyllables = concatenateLastSyllables(syllables, 3);
-                WordVariant wordVariant = new WordVariant(variantNumber, lastStressRhymingSyllables, lastRhymingSyllable, lastTwoRhymingSyllables, lastThreeRhymingSyllables);
-                List<WordVariant> wordVariants = words.get(word);
-                if(wordVariants == null) {
-                    wordVariants = new ArrayList<>();
-                    words.put(word, wordVariants);
+
+                if (wordEnd - lineStart > wordChars.length) wordChars = new char[wordEnd - lineStart];
+                String word = readWord(buffer, lineStart, wordEnd, wordChars);
+                sink.onPronunciation(word, variantNumber, chars, wordSeparator + 2, lineEnd);
+            }
+            lineStart = nextLineStart;
+        }
+    }
+
+    /**
+     * Parse the pronunciations of a dictionary, using the threads of the given pool. The dictionary is split into
+     * chunks of lines, which are parsed in parallel. The sink receives the word variants on the calling thread, in
+     * the order of the dictionary, like with {@link #readWords(SyllableParser, ByteBuffer, WordVariantSink)}.
+     *
+     * @param pool the threads used to parse the dictionary, or null to parse it on the calling thread.
+     * @see #readWords(SyllableParser, ByteBuffer, WordVariantSink)
+     */
+    static void readWords(PhoneTable phoneTable, ByteBuffer buffer, ForkJoinPool pool, WordVariantSink sink) {
+        if (pool == null) {
+            readWords(new SyllableParser(phoneTable), buffer, sink);
+            return;
+        }
+        final List<ReadChunkTask> tasks = new ArrayList<>();
+        int limit = buffer.limit();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, buffer.remaining() / (pool.getParallelism() * 4));
+        for (int chunkStart = buffer.position(); chunkStart < limit; ) {
+            int chunkEnd = Math.min(chunkStart + chunkSize, limit);
+            // Chunks end after a new line.
+            while (chunkEnd < limit && buffer.get(chunkEnd - 1) != '\n') chunkEnd++;
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunkEnd);
+            chunk.position(chunkStart);
+            tasks.add(new ReadChunkTask(phoneTable, chunk));
+            chunkStart = chunkEnd;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        for (ReadChunkTask task : tasks) {
+            for (int i = 0; i < task.words.size(); i++) {
+                sink.onWordVariant(task.words.get(i), task.wordVariants.get(i));
+            }
+        }
+    }
+
+    /**
+     * Parse the pronunciations of a dictionary read from a stream, in chunks of lines, as the stream is read.
+     * Only one chunk, of about {@value #STREAM_CHUNK_SIZE} bytes, is in memory at a time. The stream is closed.
+     *
+     * @see #readWords(PhoneTable, ByteBuffer, ForkJoinPool, WordVariantSink)
+     */
+    static void readWords(PhoneTable phoneTable, InputStream is, ForkJoinPool pool, WordVariantSink sink) throws IOException {
+        try {
+            byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+            int length = 0;
+            while (true) {
+                int count = is.read(chunk, length, chunk.length - length);
+                if (count < 0) break;
+                length += count;
+                if (length < chunk.length) continue;
+                // The chunk is full: parse its complete lines, and keep the last line, which may be incomplete.
+                int linesEnd = length;
+                while (linesEnd > 0 && chunk[linesEnd - 1] != '\n') linesEnd--;
+                if (linesEnd == 0) {
+                    chunk = Arrays.copyOf(chunk, chunk.length * 2);
+                    continue;
                 }
-                wordVariants.add(wordVariant);
+                readWords(phoneTable, ByteBuffer.wrap(chunk, 0, linesEnd), pool, sink);
+                System.arraycopy(chunk, linesEnd, chunk, 0, length - linesEnd);
+                length -= linesEnd;
             }
+            readWords(phoneTable, ByteBuffer.wrap(chunk, 0, length), pool, sink);
         } finally {
-            if (bufferedReader != null) bufferedReader.close();
+            is.close();
         }
-        return words;
     }
 
     /**
-     * @return a string concatenating the last n syllables in the array
-     * For example: if we have this word:
-     * TELEPHONE:
-     *   symbols:  T,EH1,L,AH0,F,OW2,N
-     *   syllables: EHL,AHF,OWN
-     * And if we want the last 2 syllables, we will return "AHFOWN"
+     * Read a whole stream into a buffer, for {@link #readWords(SyllableParser, ByteBuffer, WordVariantSink)}.
+     * The stream is closed.
      */
-    private static String concatenateLastSyllables(String[] syllables, int n) {
-        if (syllables.length < n) return null;
+    static ByteBuffer read(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(is.available(), 65536));
+            byte[] buffer = new byte[65536];
+            for (int count = is.read(buffer); count >= 0; count = is.read(buffer)) {
+                bytes.write(buffer, 0, count);
+            }
+            return ByteBuffer.wrap(bytes.toByteArray());
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Receives the word variants read from a dictionary.
+     */
+    interface WordVariantSink {
+        /**
+         * @param word        the word, in lower case.
+         * @param wordVariant one pronunciation of the word.
+         */
+        void onWordVariant(String word, WordVariant wordVariant);
+    }
+
+    /**
+     * Receives the pronunciations read from a dictionary.
+     */
+    interface PronunciationSink {
+        /**
+         * @param word          the word, in lower case.
+         * @param variantNumber the number of the variant of the word with this pronunciation.
+         * @param pronunciation contains the phone symbols, with stress, separated by spaces, between start
+         *                      (inclusive) and end (exclusive). The characters are only valid during this call.
+         */
+        void onPronunciation(String word, int variantNumber, CharSequence pronunciation, int start, int end);
+    }
+
+    /**
+     * Parses a chunk of lines of the dictionary, and keeps the word variants in order.
+     */
+    private static class ReadChunkTask extends RecursiveAction implements WordVariantSink {
+        private final PhoneTable phoneTable;
+        private final ByteBuffer chunk;
+        private final List<String> words = new ArrayList<>();
+        private final List<WordVariant> wordVariants = new ArrayList<>();
+
+        ReadChunkTask(PhoneTable phoneTable, ByteBuffer chunk) {
+            this.phoneTable = phoneTable;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            // Parsers can't be shared between threads.
+            readWords(new SyllableParser(phoneTable), chunk, this);
+        }
+
+        @Override
+        public void onWordVariant(String word, WordVariant wordVariant) {
+            words.add(word);
+            wordVariants.add(wordVariant);
+        }
+    }
+
+    private static boolean isComment(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return lineEnd - lineStart >= 3
+                && buffer.get(lineStart) == ';' && buffer.get(lineStart + 1) == ';' && buffer.get(lineStart + 2) == ';';
+    }
+
+    /**
+     * @return the position of the two spaces between the word and its pronunciation, or -1 if there are none.
+     */
+    private static int indexOfWordSeparator(ByteBuffer buffer, int lineStart, int lineEnd) {
+        for (int i = lineStart + 1; i < lineEnd - 1; i++) {
+            if (buffer.get(i) == ' ' && buffer.get(i + 1) == ' ') return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static int parseInt(ByteBuffer buffer, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) result = result * 10 + buffer.get(i) - '0';
+        return result;
+    }
+
+    /**
+     * @return the word between start and end, in lower case.
+     */
+    private static String readWord(ByteBuffer buffer, int start, int end, char[] wordChars) {
+        int length = end - start;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(start + i);
+            // Only a few words aren't ASCII.
+            if (b < 0) return decode(buffer, start, end).toLowerCase(Locale.US);
+            wordChars[i] = b >= 'A' && b <= 'Z' ? (char) (b + 'a' - 'A') : (char) b;
+        }
+        return new String(wordChars, 0, length);
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * A view of the ASCII characters of a buffer, with the same indexes as the buffer.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer buffer;
+
+        AsciiSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return decode(buffer, start, end);
+        }
 
-        StringBuilder builder = new StringBuilder();
-        for (int i = syllables.length - n; i < syllables.length; i++) {
-            builder.append(syllables[i]);
+        @Override
+        public String toString() {
+            return decode(buffer, 0, buffer.limit());
         }
-        return builder.toString();
     }
 
 }
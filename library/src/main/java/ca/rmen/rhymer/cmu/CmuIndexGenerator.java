@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer.cmu;
+
+import ca.rmen.rhymer.MemoryRhymer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the index of the CMU dictionary files, read by {@link CmuDictionary#loadPrebuiltRhymer()}, and the
+ * letter to phone model trained with them, read by {@link CmuDictionary#loadLetterToPhoneModel()}.
+ * This is run at build time, by the generateIndex gradle task.
+ */
+public class CmuIndexGenerator {
+    private CmuIndexGenerator() {
+        // Prevent instantiation of a utility class
+    }
+
+    /**
+     * @param args the path of the index file to write, and optionally the path of the model file to write.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: CmuIndexGenerator </path/to/index/file> [</path/to/model/file>]");
+            System.exit(-1);
+        }
+        final MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        write(new File(args[0]), new Writer() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                rhymer.writeIndex(os);
+            }
+        });
+        if (args.length == 2) {
+            final LetterToPhoneModel model = CmuDictionary.trainLetterToPhoneModel();
+            write(new File(args[1]), new Writer() {
+                @Override
+                public void write(OutputStream os) throws IOException {
+                    model.write(os);
+                }
+            });
+        }
+    }
+
+    private static void write(File file, Writer writer) throws IOException {
+        File folder = file.getParentFile();
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Couldn't create folder " + folder);
+        }
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            writer.write(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    private interface Writer {
+        void write(OutputStream os) throws IOException;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer.cmu;
+
+import ca.rmen.rhymer.MappedRhymer;
+import ca.rmen.rhymer.PhoneTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A dictionary in the format of the CMU dictionary, which can be loaded with
+ * {@link CmuDictionary#loadRhymer(java.util.List, MergePolicy)}.
+ * Each source is read once, when the rhymer is loaded.
+ */
+public abstract class DictionarySource {
+
+    /**
+     * @return the dictionary, encoded in UTF-8, between the position and the limit of the buffer.
+     * @throws IOException if the dictionary couldn't be read.
+     */
+    public abstract ByteBuffer read() throws IOException;
+
+    /**
+     * @return the CMU dictionary file, from the resources of the library.
+     */
+    public static DictionarySource cmuDictionary() {
+        return new DictionarySource() {
+            @Override
+            public ByteBuffer read() throws IOException {
+                return CmuDictionaryReader.read(CmuDictionary.getResource(CmuDictionary.WORDS_FILE));
+            }
+        };
+    }
+
+    /**
+     * @return a dictionary file, which is memory-mapped instead of being copied to the heap.
+     */
+    public static DictionarySource fromFile(final File file) {
+        return new DictionarySource() {
+            @Override
+            public ByteBuffer read() throws IOException {
+                return MappedRhymer.map(file);
+            }
+        };
+    }
+
+    /**
+     * Add the words of this dictionary to the sink, in order. By default, the whole dictionary is {@link #read()}
+     * first.
+     */
+    void readWords(PhoneTable phoneTable, ForkJoinPool pool, CmuDictionaryReader.WordVariantSink sink) throws IOException {
+        CmuDictionaryReader.readWords(phoneTable, read(), pool, sink);
+    }
+
+    /**
+     * @return a dictionary read from a stream. The stream can only be read once: it is closed after it is read.
+     * When the rhymer is loaded, the stream is parsed in chunks of lines, as it is read, and isn't kept in memory.
+     * Calling {@link #read()} reads the whole stream into one buffer.
+     */
+    public static DictionarySource fromStream(final InputStream is) {
+        return new DictionarySource() {
+            @Override
+            public ByteBuffer read() throws IOException {
+                return CmuDictionaryReader.read(is);
+            }
+
+            @Override
+            void readWords(PhoneTable phoneTable, ForkJoinPool pool, CmuDictionaryReader.WordVariantSink sink) throws IOException {
+                CmuDictionaryReader.readWords(phoneTable, is, pool, sink);
+            }
+        };
+    }
+
+    /**
+     * @param buffer the dictionary, encoded in UTF-8, between the position and the limit of the buffer.
+     * @return a dictionary which is already in memory.
+     */
+    public static DictionarySource fromBuffer(final ByteBuffer buffer) {
+        return new DictionarySource() {
+            @Override
+            public ByteBuffer read() {
+                return buffer;
+            }
+        };
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer.cmu;
+
+import ca.rmen.rhymer.PhoneTable;
+import ca.rmen.rhymer.PhoneType;
+import ca.rmen.rhymer.PronunciationGuesser;
+import ca.rmen.rhymer.Rhymer;
+import ca.rmen.rhymer.WordVariant;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Guesses the pronunciation of a word from its letters, with a model trained from a dictionary.
+ * <p/>
+ * Each letter of a word is pronounced as no phone, one phone, or two phones (like the X of BOX: K S).  The training
+ * aligns the letters of each word of the dictionary with the phones of its pronunciations, and counts the
+ * pronunciations of each letter in its contexts: the letters around it.  The contexts are nested: the first one has
+ * the most letters on each side, and each following one has one letter less.  A letter is pronounced like in the
+ * first of its contexts which is in the model.  The model only keeps the contexts which are pronounced differently
+ * than their following context: for the CMU dictionary, it is a table of about 80,000 entries.
+ * <p/>
+ * A trained model can be written with {@link #write(OutputStream)}, and read back with
+ * {@link #read(PhoneTable, InputStream)}, which is much faster than training it again.
+ * <p/>
+ * A model may be used from multiple threads at the same time.
+ */
+public class LetterToPhoneModel implements PronunciationGuesser {
+    private static final int MAGIC = 0x52484c50;
+    private static final int VERSION = 1;
+    // The number of letters on the left and right of each context, from the longest context to the shortest one.
+    private static final int[][] CONTEXTS = {{3, 3}, {2, 3}, {2, 2}, {1, 2}, {1, 1}, {0, 1}, {0, 0}};
+    private static final int MAX_CONTEXT = 3;
+    private static final int ALIGNMENT_ITERATIONS = 4;
+    private static final float ROUNDING_ERROR = 1e-3f;
+    // A letter takes 5 bits in a context: 0 is outside of the word, 1-26 are a-z, 27 is an apostrophe.
+    private static final int LETTER_BITS = 5;
+    private static final byte OTHER_LETTER = 28;
+    private static final int LETTER_COUNT = 29;
+    // A pronunciation of a letter is an int: the ids of its first and second phones, from the lowest byte.
+    private static final int SILENT = 0;
+    private static final int PRONUNCIATION_COUNT = 1 << 16;
+
+    private final SyllableParser syllableParser;
+    // The phone symbols with stress, like AE1, by id.  Id 0 is unused.
+    private final String[] symbols;
+    private final boolean[] vowels;
+    // The codes of the phones in the phone table, by id.
+    private final byte[] codes;
+    // The pronunciation of each context, in a hash table with open addressing.
+    private final long[] contexts;
+    private final int[] pronunciations;
+    private final int size;
+
+    /**
+     * Create an empty model, with room for the given number of contexts.
+     *
+     * @throws IllegalArgumentException if a symbol isn't in the phone table.
+     */
+    private LetterToPhoneModel(PhoneTable phoneTable, String[] symbols, int size) {
+        syllableParser = new SyllableParser(phoneTable);
+        this.symbols = symbols;
+        vowels = new boolean[symbols.length];
+        codes = new byte[symbols.length];
+        for (int id = 1; id < symbols.length; id++) {
+            vowels[id] = isVowel(symbols[id]);
+            codes[id] = phoneTable.getCode(symbols[id], 0, symbols[id].length() - (vowels[id] ? 1 : 0));
+            if (codes[id] < 0) throw new IllegalArgumentException("Unknown phone " + symbols[id]);
+        }
+        int capacity = Integer.highestOneBit(Math.max(1, size) * 2) * 2;
+        contexts = new long[capacity];
+        pronunciations = new int[capacity];
+        this.size = size;
+    }
+
+    private LetterToPhoneModel(PhoneTable phoneTable, String[] symbols, Map<Long, Integer> model) {
+        this(phoneTable, symbols, model.size());
+        for (Map.Entry<Long, Integer> entry : model.entrySet()) put(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Train a model with the pronunciations of a dictionary in the format of the CMU dictionary.
+     * This takes a few seconds for the CMU dictionary.
+     *
+     * @param phoneTable the phones of the dictionary.
+     * @param dictionary the dictionary, encoded in UTF-8, between the position and the limit of the buffer.
+     * @throws IllegalArgumentException if the dictionary contains an invalid line or an unknown phone.
+     */
+    public static LetterToPhoneModel train(PhoneTable phoneTable, ByteBuffer dictionary) {
+        // Vowels have one symbol per stress.
+        final Map<String, Integer> symbolIds = new HashMap<>();
+        List<String> symbols = new ArrayList<>();
+        symbols.add(null);
+        for (int code = 0; code < phoneTable.size(); code++) {
+            String symbol = phoneTable.getSymbol(code);
+            if (phoneTable.getPhoneType(code) == PhoneType.VOWEL) {
+                for (char stress = '0'; stress <= '2'; stress++) {
+                    symbolIds.put(symbol + stress, symbols.size());
+                    symbols.add(symbol + stress);
+                }
+            } else {
+                symbolIds.put(symbol, symbols.size());
+                symbols.add(symbol);
+            }
+        }
+        if (symbols.size() > 0xff) throw new IllegalArgumentException("Too many phones: " + phoneTable.size());
+        boolean[] vowels = new boolean[symbols.size()];
+        for (int id = 1; id < vowels.length; id++) vowels[id] = isVowel(symbols.get(id));
+
+        final List<byte[]> words = new ArrayList<>();
+        final List<int[]> phones = new ArrayList<>();
+        CmuDictionaryReader.readPronunciations(dictionary, new CmuDictionaryReader.PronunciationSink() {
+            @Override
+            public void onPronunciation(String word, int variantNumber, CharSequence pronunciation, int start, int end) {
+                String[] tokens = pronunciation.subSequence(start, end).toString().trim().split(" +");
+                int[] wordPhones = new int[tokens.length];
+                for (int i = 0; i < tokens.length; i++) {
+                    Integer symbolId = symbolIds.get(tokens[i]);
+                    if (symbolId == null) throw new IllegalArgumentException("Unknown phone " + tokens[i]);
+                    wordPhones[i] = symbolId;
+                }
+                words.add(toLetters(word));
+                phones.add(wordPhones);
+            }
+        });
+
+        int[][] alignments = align(words, phones, vowels);
+        Map<Long, Integer> model = new HashMap<>();
+        LetterToPhoneModel result = new LetterToPhoneModel(phoneTable, symbols.toArray(new String[symbols.size()]), model);
+        // Start with the shortest contexts, so that we know how the letters would be pronounced without each context.
+        for (int level = CONTEXTS.length - 1; level >= 0; level--) {
+            addContexts(model, level, words, alignments, result);
+            result = new LetterToPhoneModel(phoneTable, result.symbols, model);
+        }
+        return result;
+    }
+
+    /**
+     * Read a model written by {@link #write(OutputStream)}.
+     *
+     * @param phoneTable the phones of the dictionary the model was trained with.
+     * @param is         the model. The stream is not closed.
+     * @throws IOException if the stream couldn't be read, or doesn't contain a model with these phones.
+     */
+    public static LetterToPhoneModel read(PhoneTable phoneTable, InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        if (dis.readInt() != MAGIC) throw new IOException("Not a letter to phone model");
+        int version = dis.readInt();
+        if (version != VERSION) throw new IOException("Unsupported letter to phone model version " + version);
+        String[] symbols = new String[dis.readInt() + 1];
+        for (int id = 1; id < symbols.length; id++) {
+            symbols[id] = dis.readUTF();
+            if (symbols[id].isEmpty()) throw new IOException("Empty phone symbol");
+        }
+        LetterToPhoneModel model;
+        try {
+            model = new LetterToPhoneModel(phoneTable, symbols, dis.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        for (int i = 0; i < model.size; i++) {
+            long context = dis.readLong();
+            int pronunciation = dis.readInt();
+            int firstPhone = pronunciation & 0xff;
+            int secondPhone = pronunciation >>> 8;
+            if (context == 0 || firstPhone >= symbols.length || secondPhone >= symbols.length
+                    || firstPhone == 0 && secondPhone != 0) {
+                throw new IOException("Invalid context " + context);
+            }
+            model.put(context, pronunciation);
+        }
+        return model;
+    }
+
+    /**
+     * Write the model in a binary format which can be read back with {@link #read(PhoneTable, InputStream)}.
+     *
+     * @param os the stream to write the model to. The stream is flushed, but not closed.
+     * @throws IOException if the model couldn't be written to the given stream.
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeInt(symbols.length - 1);
+        for (int id = 1; id < symbols.length; id++) dos.writeUTF(symbols[id]);
+        dos.writeInt(size);
+        for (int slot = 0; slot < contexts.length; slot++) {
+            if (contexts[slot] == 0) continue;
+            dos.writeLong(contexts[slot]);
+            dos.writeInt(pronunciations[slot]);
+        }
+        dos.flush();
+    }
+
+    /**
+     * @return the number of contexts of the model.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The guess only depends on the letters of the word, not on the words of the rhymer.
+     */
+    @Override
+    public List<WordVariant> guessWordVariants(Rhymer rhymer, String word) {
+        return guessWordVariants(word);
+    }
+
+    /**
+     * @param word a word, in lower case.
+     * @return the guessed pronunciation of the word, or null if it has no letters known by the model.
+     */
+    public List<WordVariant> guessWordVariants(String word) {
+        int[] phones = new int[word.length() * 2];
+        int phoneCount = guessPhones(word, phones);
+        if (phoneCount == 0) return null;
+        int stressed = getStressedPhone(phones, phoneCount);
+        byte[] phoneCodes = new byte[phoneCount];
+        int lastStress = 0;
+        for (int i = 0; i < phoneCount; i++) {
+            phoneCodes[i] = codes[phones[i]];
+            if (i == stressed || getStress(phones[i]) == '1') lastStress = i;
+        }
+        return Collections.singletonList(syllableParser.createWordVariant(0, phoneCodes, phoneCount, lastStress));
+    }
+
+    /**
+     * @param word a word, in lower case.
+     * @return the phone symbols of the guessed pronunciation, with stress, separated by spaces.
+     * Example: for "yeeted", Y IY1 T AH0 D.
+     */
+    public String guessPronunciation(String word) {
+        int[] phones = new int[word.length() * 2];
+        int phoneCount = guessPhones(word, phones);
+        int stressed = getStressedPhone(phones, phoneCount);
+        StringBuilder result = new StringBuilder(phoneCount * 4);
+        for (int i = 0; i < phoneCount; i++) {
+            if (i > 0) result.append(' ');
+            String symbol = symbols[phones[i]];
+            if (i == stressed) result.append(symbol, 0, symbol.length() - 1).append('1');
+            else result.append(symbol);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param phones receives the ids of the phones of the guessed pronunciation. It has room for two phones per
+     *               letter.
+     * @return the number of phones.
+     */
+    private int guessPhones(String word, int[] phones) {
+        byte[] letters = toLetters(word);
+        int phoneCount = 0;
+        for (int i = MAX_CONTEXT; i < letters.length - MAX_CONTEXT; i++) {
+            for (int pronunciation = getPronunciation(letters, i, 0); pronunciation != SILENT; pronunciation >>>= 8) {
+                phones[phoneCount++] = pronunciation & 0xff;
+            }
+        }
+        return phoneCount;
+    }
+
+    /**
+     * The rhymes start at the last stressed syllable: a pronunciation needs one.
+     *
+     * @return the position of the vowel which gets the primary stress, or -1 if the pronunciation has a vowel with
+     * primary stress, or no vowel.
+     */
+    private int getStressedPhone(int[] phones, int phoneCount) {
+        int secondaryStress = -1;
+        int firstVowel = -1;
+        for (int i = 0; i < phoneCount; i++) {
+            char stress = getStress(phones[i]);
+            if (stress == '1') return -1;
+            if (stress == '2' && secondaryStress < 0) secondaryStress = i;
+            if (vowels[phones[i]] && firstVowel < 0) firstVowel = i;
+        }
+        return secondaryStress >= 0 ? secondaryStress : firstVowel;
+    }
+
+    /**
+     * @return the stress of the phone with the given id, like '1', or 0 if it isn't a vowel.
+     */
+    private char getStress(int phone) {
+        return vowels[phone] ? symbols[phone].charAt(symbols[phone].length() - 1) : 0;
+    }
+
+    private static boolean isVowel(String symbol) {
+        return Character.isDigit(symbol.charAt(symbol.length() - 1));
+    }
+
+    /**
+     * @param letters    the letters of a word, surrounded by MAX_CONTEXT zeros on each side.
+     * @param position   the position of a letter.
+     * @param firstLevel the first context to look up.
+     * @return the pronunciation of the letter in the first of its contexts which is in the model, or SILENT if none
+     * is.
+     */
+    private int getPronunciation(byte[] letters, int position, int firstLevel) {
+        for (int level = firstLevel; level < CONTEXTS.length; level++) {
+            int slot = getSlot(getContext(letters, position, level));
+            if (contexts[slot] != 0) return pronunciations[slot];
+        }
+        return SILENT;
+    }
+
+    private void put(long context, int pronunciation) {
+        int slot = getSlot(context);
+        contexts[slot] = context;
+        pronunciations[slot] = pronunciation;
+    }
+
+    /**
+     * @return the slot of the context in the hash table, or the empty slot where it should be added.
+     */
+    private int getSlot(long context) {
+        int mask = contexts.length - 1;
+        int slot = (int) ((context * 0x9e3779b97f4a7c15L) >>> 40) & mask;
+        while (contexts[slot] != 0 && contexts[slot] != context) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * @return the letters around the given position, and the level of the context. It is never 0.
+     */
+    private static long getContext(byte[] letters, int position, int level) {
+        long context = level + 1;
+        for (int i = position - CONTEXTS[level][0]; i <= position + CONTEXTS[level][1]; i++) {
+            context = context << LETTER_BITS | letters[i];
+        }
+        return context;
+    }
+
+    /**
+     * @return the letters of the word, surrounded by MAX_CONTEXT zeros on each side.
+     */
+    private static byte[] toLetters(String word) {
+        byte[] letters = new byte[word.length() + 2 * MAX_CONTEXT];
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            letters[MAX_CONTEXT + i] = c >= 'a' && c <= 'z' ? (byte) (c - 'a' + 1) : c == '\'' ? 27 : OTHER_LETTER;
+        }
+        return letters;
+    }
+
+    /**
+     * Align the letters of each word with the phones of its pronunciation: find the pronunciation of each letter,
+     * so that the pronunciations of the letters are the most frequent ones.  This repeats a Viterbi alignment,
+     * starting with a vowel letter being likely to be pronounced as a vowel, and then with the frequencies of the
+     * pronunciations of the letters in the previous alignment.
+     *
+     * @return the pronunciation of each letter of each word, or null for the words which can't be aligned.
+     */
+    private static int[][] align(List<byte[]> words, List<int[]> phones, boolean[] vowels) {
+        float[][] costs = new float[LETTER_COUNT][PRONUNCIATION_COUNT];
+        for (int letter = 0; letter < LETTER_COUNT; letter++) {
+            boolean isVowelLetter = isVowelLetter(letter);
+            Arrays.fill(costs[letter], 4);
+            costs[letter][SILENT] = 2.5f;
+            for (int phone = 1; phone < vowels.length; phone++) costs[letter][phone] = vowels[phone] == isVowelLetter ? 1 : 2;
+        }
+        int[][] alignments = new int[words.size()][];
+        Aligner aligner = new Aligner();
+        for (int iteration = 0; iteration < ALIGNMENT_ITERATIONS; iteration++) {
+            int[][] counts = new int[LETTER_COUNT][PRONUNCIATION_COUNT];
+            for (int i = 0; i < words.size(); i++) {
+                alignments[i] = aligner.align(words.get(i), phones.get(i), costs);
+                if (alignments[i] == null) continue;
+                for (int j = 0; j < alignments[i].length; j++) {
+                    counts[words.get(i)[MAX_CONTEXT + j]][alignments[i][j]]++;
+                }
+            }
+            for (int letter = 0; letter < LETTER_COUNT; letter++) {
+                int total = 0;
+                for (int count : counts[letter]) total += count;
+                for (int pronunciation = 0; pronunciation < PRONUNCIATION_COUNT; pronunciation++) {
+                    costs[letter][pronunciation] = (float) -Math.log((counts[letter][pronunciation] + 0.01) / (total + 1));
+                }
+            }
+        }
+        return alignments;
+    }
+
+    private static boolean isVowelLetter(int letter) {
+        switch (letter) {
+            case 'a' - 'a' + 1:
+            case 'e' - 'a' + 1:
+            case 'i' - 'a' + 1:
+            case 'o' - 'a' + 1:
+            case 'u' - 'a' + 1:
+            case 'y' - 'a' + 1:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Add the contexts of the given level to the model, with their most frequent pronunciation.  The contexts which
+     * are pronounced like the following contexts, which are already in the model, are left out.
+     */
+    private static void addContexts(Map<Long, Integer> model, int level, List<byte[]> words, int[][] alignments,
+                                    LetterToPhoneModel shorterContexts) {
+        // Sort the contexts with their pronunciation, to count the pronunciations of each context.
+        int letterCount = 0;
+        for (int[] alignment : alignments) if (alignment != null) letterCount += alignment.length;
+        long[] samples = new long[letterCount];
+        int size = 0;
+        for (int i = 0; i < alignments.length; i++) {
+            if (alignments[i] == null) continue;
+            for (int j = 0; j < alignments[i].length; j++) {
+                samples[size++] = getContext(words.get(i), MAX_CONTEXT + j, level) << 16 | alignments[i][j];
+            }
+        }
+        Arrays.sort(samples);
+        byte[] letters = new byte[2 * MAX_CONTEXT + 1];
+        for (int start = 0; start < size; ) {
+            long context = samples[start] >>> 16;
+            int end = start;
+            int bestPronunciation = SILENT;
+            int bestCount = 0;
+            while (end < size && samples[end] >>> 16 == context) {
+                int pronunciationEnd = end;
+                while (pronunciationEnd < size && samples[pronunciationEnd] == samples[end]) pronunciationEnd++;
+                if (pronunciationEnd - end > bestCount) {
+                    bestCount = pronunciationEnd - end;
+                    bestPronunciation = (int) (samples[end] & 0xffff);
+                }
+                end = pronunciationEnd;
+            }
+            // Find the pronunciation of the letter without this context.
+            long letterBits = context;
+            for (int i = MAX_CONTEXT + CONTEXTS[level][1]; i >= MAX_CONTEXT - CONTEXTS[level][0]; i--) {
+                letters[i] = (byte) (letterBits & ((1 << LETTER_BITS) - 1));
+                letterBits >>>= LETTER_BITS;
+            }
+            if (level == CONTEXTS.length - 1
+                    || shorterContexts.getPronunciation(letters, MAX_CONTEXT, level + 1) != bestPronunciation) {
+                model.put(context, bestPronunciation);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Finds the best alignment of the letters of a word with its phones, reusing its arrays between words.
+     */
+    private static class Aligner {
+        private float[] costs = new float[0];
+        private byte[] moves = new byte[0];
+
+        /**
+         * @return the pronunciation of each letter, or null if the phones can't be aligned with the letters.
+         */
+        int[] align(byte[] word, int[] phones, float[][] pronunciationCosts) {
+            int letterCount = word.length - 2 * MAX_CONTEXT;
+            int phoneCount = phones.length;
+            int width = phoneCount + 1;
+            int cellCount = (letterCount + 1) * width;
+            if (costs.length < cellCount) {
+                costs = new float[cellCount];
+                moves = new byte[cellCount];
+            }
+            Arrays.fill(costs, 0, cellCount, Float.POSITIVE_INFINITY);
+            costs[0] = 0;
+            // A move is the number of phones of a letter.
+            for (int i = 0; i < letterCount; i++) {
+                float[] letterCosts = pronunciationCosts[word[MAX_CONTEXT + i]];
+                for (int j = 0; j <= phoneCount; j++) {
+                    float cost = costs[i * width + j];
+                    if (cost == Float.POSITIVE_INFINITY) continue;
+                    update(i + 1, j, width, cost + letterCosts[SILENT], 0);
+                    if (j < phoneCount) update(i + 1, j + 1, width, cost + letterCosts[phones[j]], 1);
+                    if (j + 1 < phoneCount) update(i + 1, j + 2, width, cost + letterCosts[phones[j] | phones[j + 1] << 8], 2);
+                }
+            }
+            if (costs[letterCount * width + phoneCount] == Float.POSITIVE_INFINITY) return null;
+            int[] alignment = new int[letterCount];
+            for (int i = letterCount, j = phoneCount; i > 0; i--) {
+                int move = moves[i * width + j];
+                j -= move;
+                alignment[i - 1] = move == 0 ? SILENT : move == 1 ? phones[j] : phones[j] | phones[j + 1] << 8;
+            }
+            return alignment;
+        }
+
+        private void update(int i, int j, int width, float cost, int move) {
+            int cell = i * width + j;
+            // Alignments which only differ in the order of their costs, like the two "e"s of "ee", can have sums
+            // which differ by a rounding error: keep the first one, so that the same letters are aligned the same way
+            // in every word.
+            if (cost < costs[cell] - ROUNDING_ERROR) {
+                costs[cell] = cost;
+                moves[cell] = (byte) move;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer.cmu;
+
+/**
+ * What to do with a word which is in several of the dictionaries loaded by
+ * {@link CmuDictionary#loadRhymer(java.util.List, MergePolicy)}.
+ */
+public enum MergePolicy {
+    /**
+     * Keep the pronunciations of the first dictionary which has the word.
+     */
+    KEEP_FIRST,
+
+    /**
+     * Keep the pronunciations of the last dictionary which has the word: each dictionary overrides the ones
+     * before it.
+     */
+    REPLACE,
+
+    /**
+     * Keep the pronunciations of all the dictionaries which have the word, in the order of the dictionaries.
+     * The variant numbers of the pronunciations of a dictionary follow the ones of the dictionaries before it.
+     * The pronunciations with the same rhyming keys as a kept pronunciation are skipped.
+     */
+    APPEND
+}
@@ -18,78 +18,109 @@
  */
 package ca.rmen.rhymer.cmu;
 
+import ca.rmen.rhymer.PhoneTable;
 import ca.rmen.rhymer.PhoneType;
+import ca.rmen.rhymer.RhymeKey;
+import ca.rmen.rhymer.WordVariant;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Parses the pronunciations of the dictionary.
+ * <p/>
+ * A parser reuses a buffer between pronunciations: it must not be used by several threads at the same time.
+ */
 class SyllableParser {
-    private final Map<String, PhoneType> symbolPhoneMap;
+    private final PhoneTable phoneTable;
+    private byte[] phones = new byte[32];
 
-    public SyllableParser(Map<String, PhoneType> symbolPhoneMap) {
-        this.symbolPhoneMap = symbolPhoneMap;
+    public SyllableParser(PhoneTable phoneTable) {
+        this.phoneTable = phoneTable;
     }
 
     /**
-     * Combine symbols into syllables, for use in rhyming matching. Stress is ignored.
+     * Extract the rhyming keys of a pronunciation of a word.
+     * <p/>
      * The symbols with variations are reduced to the root symbol. For
      * example: AE1 and AE2, are reduced to the root symbol AE
      * <p/>
-     * Example: For the word "KITCAT", the symbols are:  K IH1 T K AE2 T
+     * The rhyming syllables start at a vowel: for the word "KITCAT", the symbols are:  K IH1 T K AE2 T
+     * The syllables are KIT and CAT, but we're only interested in IT and AT for rhyming: IH T, and AE T.
      * <p/>
-     * The syllables are KIT and CAT, but we're only interested in
-     * IT and AT for rhyming, so this will return "IHT", "AET".
+     * The strict rhyming key starts at the last stressed syllable.  Example, for the word "TELEMEDICINE",
+     * the symbols are:  T EH2 L IH0 M EH1 D IH0 S AH0 N
+     * We note that EH1 is the last stressed syllable. The key is the stressed syllable and the rest of the ones after:
+     * EH D IH S AH N
+     * <p/>
+     * All the keys are endings of the word, so they share one array of phone codes: the whole pronunciation.
+     * The symbols are read in place: no objects are created for them.
      *
-     * @return an array of rhyming syllables for the given list of phone symbols.
+     * @param variantNumber the number of the variant of the word with this pronunciation.
+     * @param pronunciation contains the phone symbols, with stress, separated by spaces, between start (inclusive)
+     *                      and end (exclusive). Example: K IH1 T K AE2 T
+     * @return the word variant with the rhyming keys of this pronunciation.
+     * @throws IllegalArgumentException if a symbol isn't in the phone table.
      */
-    String[] extractRhymingSyllables(String[] symbols) {
-        List<String> syllables = new ArrayList<>();
-
-        String currentSyllable = "";
-        for (String symbol : symbols) {
-            String symbolRoot = symbol.replaceAll("[0-9]$", "");
-            PhoneType phoneType = symbolPhoneMap.get(symbolRoot);
-            if (phoneType == PhoneType.VOWEL) {
-                if (!currentSyllable.isEmpty()) {
-                    syllables.add(currentSyllable);
-                    currentSyllable = "";
+    WordVariant parseWordVariant(int variantNumber, CharSequence pronunciation, int start, int end) {
+        int phoneCount = 0;
+        int lastStress = 0;
+        int symbolStart = start;
+        while (symbolStart < end) {
+            int symbolEnd = symbolStart;
+            while (symbolEnd < end && pronunciation.charAt(symbolEnd) != ' ') symbolEnd++;
+            if (symbolEnd > symbolStart) {
+                char stress = pronunciation.charAt(symbolEnd - 1);
+                int rootEnd = stress >= '0' && stress <= '9' ? symbolEnd - 1 : symbolEnd;
+                byte code = phoneTable.getCode(pronunciation, symbolStart, rootEnd);
+                if (code < 0) {
+                    throw new IllegalArgumentException("Unknown phone " + pronunciation.subSequence(symbolStart, symbolEnd));
                 }
-            } else if (currentSyllable.isEmpty()) {
-                continue;
+                if (phoneCount == phones.length) phones = Arrays.copyOf(phones, phoneCount * 2);
+                if (stress == '1') lastStress = phoneCount;
+                phones[phoneCount++] = code;
             }
-            currentSyllable = currentSyllable + symbolRoot;
+            symbolStart = symbolEnd + 1;
         }
-        if (!currentSyllable.isEmpty()) syllables.add(currentSyllable);
-        return syllables.toArray(new String[syllables.size()]);
+        return createWordVariant(variantNumber, phones, phoneCount, lastStress);
     }
 
     /**
-     * Combine symbols into syllables, for use in rhyming matching. This will return
-     * the syllables from the last stressed syllable until the end of the word.
-     * <p/>
-     * The symbols with variations are reduced to the root symbol. For
-     * example: AE1 and AE2, are reduced to the root symbol AE
-     * <p/>
-     * Example, for the word "TELEMEDICINE", the symbols are:  T EH2 L IH0 M EH1 D IH0 S AH0 N
-     * We note that EH1 is the last stressed syllable. The symbols after that are D IH0 S AH0 N
-     * We strip the stress marks, and return the stressed syllable and the rest of the ones after:
-     * EHDIHSAHN
+     * Extract the rhyming keys of a pronunciation of a word, given as phone codes.  This doesn't use the buffer of
+     * the parser: it may be called from multiple threads at the same time.
      *
-     * @return the syllables from the last stressed syllable to the end of the word
+     * @param phones     the phone codes of the pronunciation, between 0 (inclusive) and phoneCount (exclusive).
+     * @param lastStress the position of the last vowel with primary stress, or 0 if there is none.
+     * @return the word variant with the rhyming keys of this pronunciation.
+     * @see #parseWordVariant(int, CharSequence, int, int)
      */
-    String extractStressRhymingSyllables(String[] symbols) {
-        String result = "";
-        for (int i = symbols.length - 1; i >= 0; i--) {
-            String symbolRoot = symbols[i].replaceAll("[0-9]$", "");
-            result = symbolRoot + result;
-            if(symbols[i].endsWith("1")) {
-                break;
+    WordVariant createWordVariant(int variantNumber, byte[] phones, int phoneCount, int lastStress) {
+        // The positions of the vowels of the last three syllables
+        int lastVowel = -1;
+        int secondLastVowel = -1;
+        int thirdLastVowel = -1;
+        for (int i = 0; i < phoneCount; i++) {
+            if (phoneTable.getPhoneType(phones[i]) == PhoneType.VOWEL) {
+                thirdLastVowel = secondLastVowel;
+                secondLastVowel = lastVowel;
+                lastVowel = i;
             }
-
         }
-        return result;
-    }
 
+        // The whole pronunciation is kept, to find the words with the same ending for any number of phones.
+        byte[] pronunciation = Arrays.copyOf(phones, phoneCount);
+
+        return new WordVariant(variantNumber,
+                new RhymeKey(pronunciation, lastStress),
+                createKey(pronunciation, lastVowel),
+                createKey(pronunciation, secondLastVowel),
+                createKey(pronunciation, thirdLastVowel));
+    }
 
+    /**
+     * @return the key starting at the given vowel, or null if there is no such vowel.
+     */
+    private static RhymeKey createKey(byte[] pronunciation, int vowel) {
+        if (vowel < 0) return null;
+        return new RhymeKey(pronunciation, vowel);
+    }
 }
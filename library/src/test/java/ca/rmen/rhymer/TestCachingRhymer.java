@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+public class TestCachingRhymer {
+
+    /**
+     * The cached results should be the same as the results of the cached rhymer.
+     */
+    @Test
+    public void testCachedRhymes() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        CachingRhymer cachingRhymer = new CachingRhymer(rhymer, 100);
+        for (int i = 0; i < 2; i++) {
+            for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "notaword")) {
+                TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word), cachingRhymer.getRhymingWords(word));
+                TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 5), cachingRhymer.getRhymingWords(word, 5));
+            }
+        }
+        Assert.assertEquals(10, cachingRhymer.getMissCount());
+        Assert.assertEquals(10, cachingRhymer.getHitCount());
+        Assert.assertEquals(0, cachingRhymer.getEvictionCount());
+        Assert.assertEquals(10, cachingRhymer.size());
+
+        // The case of the word doesn't matter.
+        TestIndexFile.assertSameRhymes("PUPPY", rhymer.getRhymingWords("puppy"), cachingRhymer.getRhymingWords("PUPPY"));
+        Assert.assertEquals(11, cachingRhymer.getHitCount());
+    }
+
+    /**
+     * The least recently used results should be evicted when the cache is full.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        CachingRhymer cachingRhymer = new CachingRhymer(CmuDictionary.loadRhymer(), 1);
+        cachingRhymer.getRhymingWords("puppy");
+        cachingRhymer.getRhymingWords("puppy");
+        cachingRhymer.getRhymingWords("happy");
+        cachingRhymer.getRhymingWords("puppy");
+        Assert.assertEquals(1, cachingRhymer.getHitCount());
+        Assert.assertEquals(3, cachingRhymer.getMissCount());
+        Assert.assertEquals(2, cachingRhymer.getEvictionCount());
+        Assert.assertEquals(1, cachingRhymer.size());
+
+        cachingRhymer.clear();
+        Assert.assertEquals(0, cachingRhymer.size());
+    }
+
+    /**
+     * The queries which aren't cached should be answered by the cached rhymer: the pages of rhymes of a precomputed
+     * rhymer should be read from its precomputed rhymes, without walking through the posting lists.
+     */
+    @Test
+    public void testForwardedQueries() throws IOException, InterruptedException {
+        final MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeResults(os, 20);
+        PrecomputedRhymer precomputedRhymer = new PrecomputedRhymer(ByteBuffer.wrap(os.toByteArray()));
+        CachingRhymer cachingRhymer = new CachingRhymer(precomputedRhymer, 10);
+        RhymerStats stats = new RhymerStats();
+        cachingRhymer.setListener(stats);
+        precomputedRhymer.setListener(stats);
+        for (String word : Arrays.asList("puppy", "happy", "tuesday")) {
+            TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 5, 10), cachingRhymer.getRhymingWords(word, 5, 10));
+        }
+        Assert.assertEquals(3, stats.getQueryCount());
+        for (RhymeType rhymeType : RhymeType.values()) {
+            long groupCount = 0;
+            for (long count : stats.getRhymeGroupHistogram(rhymeType)) groupCount += count;
+            Assert.assertEquals(0, groupCount);
+        }
+        Assert.assertEquals(0, cachingRhymer.size());
+
+        List<String> words = Arrays.asList("puppy", "happy", "notaword");
+        Assert.assertEquals(rhymer.getRhymingWords(words, 5).keySet(), cachingRhymer.getRhymingWords(words, 5).keySet());
+        TestIndexFile.assertSameRhymes("puppy", rhymer.getRhymingWords(words, 5).get("puppy"),
+                cachingRhymer.getRhymingWords(words, 5, Executors.newSingleThreadExecutor()).get("puppy"));
+        Assert.assertEquals(RhymeType.STRICT, cachingRhymer.doRhyme("puppy", "guppy"));
+        Assert.assertEquals(1, cachingRhymer.getRhymeCursors("puppy", RhymeType.STRICT).size());
+
+        // The guesser of the cached rhymer finds the rhymes of unknown words, for all the queries.
+        Assert.assertTrue(cachingRhymer.getRhymingWords("yeeted").isEmpty());
+        cachingRhymer.setPronunciationGuesser(new PronunciationGuesser() {
+            @Override
+            public List<WordVariant> guessWordVariants(Rhymer queryingRhymer, String word) {
+                return rhymer.getWordVariants("greeted");
+            }
+        });
+        Assert.assertNotNull(precomputedRhymer.getPronunciationGuesser());
+        Assert.assertFalse(cachingRhymer.getRhymingWords("yeeted").isEmpty());
+        Assert.assertFalse(cachingRhymer.getRhymingWords("yeeted", 0, 5).isEmpty());
+        Assert.assertFalse(cachingRhymer.getRhymingWords("yeeted", 5, new RhymeScorer() {
+            @Override
+            public double getScore(String word, String rhyme) {
+                return rhyme.length();
+            }
+        }).isEmpty());
+        Assert.assertEquals(RhymeType.STRICT, cachingRhymer.doRhyme("yeeted", "greeted"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnmodifiableResults() throws IOException {
+        CachingRhymer cachingRhymer = new CachingRhymer(CmuDictionary.loadRhymer(), 10);
+        cachingRhymer.getRhymingWords("puppy").clear();
+    }
+}
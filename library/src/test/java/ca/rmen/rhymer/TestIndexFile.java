@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.TreeSet;
+
+public class TestIndexFile {
+
+    /**
+     * Write the index of the dictionary, read it back, and make sure we have the same words and rhymes.
+     */
+    @Test
+    public void testWriteAndReadIndex() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeIndex(os);
+        MemoryRhymer readRhymer = MemoryRhymer.readIndex(new ByteArrayInputStream(os.toByteArray()));
+        Assert.assertEquals(rhymer.getWords(), readRhymer.getWords());
+        int i = 0;
+        for (String word : new TreeSet<>(rhymer.getWords())) {
+            assertSameVariants(word, rhymer.getWordVariants(word), readRhymer.getWordVariants(word));
+            if (i++ % 50 == 0) assertSameRhymes(word, rhymer.getRhymingWords(word), readRhymer.getRhymingWords(word));
+        }
+    }
+
+    @Test
+    public void testLoadPrebuiltRhymer() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        Rhymer prebuiltRhymer = CmuDictionary.loadPrebuiltRhymer();
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate")) {
+            assertSameRhymes(word, rhymer.getRhymingWords(word), prebuiltRhymer.getRhymingWords(word));
+        }
+    }
+
+    /**
+     * The index of a rhymer which only finds some types of rhymes should find the same rhymes.
+     */
+    @Test
+    public void testWriteAndReadStrictIndex() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(EnumSet.of(RhymeType.STRICT));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeIndex(os);
+        MemoryRhymer readRhymer = MemoryRhymer.readIndex(new ByteArrayInputStream(os.toByteArray()));
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate")) {
+            assertSameRhymes(word, rhymer.getRhymingWords(word), readRhymer.getRhymingWords(word));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidIndex() throws IOException {
+        MemoryRhymer.readIndex(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    static void assertSameVariants(String word, List<WordVariant> expected, List<WordVariant> actual) {
+        Assert.assertEquals(word, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            WordVariant expectedVariant = expected.get(i);
+            WordVariant actualVariant = actual.get(i);
+            Assert.assertEquals(word, expectedVariant.variantNumber, actualVariant.variantNumber);
+            Assert.assertEquals(word, expectedVariant.lastStressRhymingSyllables, actualVariant.lastStressRhymingSyllables);
+            Assert.assertEquals(word, expectedVariant.lastRhymingSyllable, actualVariant.lastRhymingSyllable);
+            Assert.assertEquals(word, expectedVariant.lastTwoRhymingSyllables, actualVariant.lastTwoRhymingSyllables);
+            Assert.assertEquals(word, expectedVariant.lastThreeRhymingSyllables, actualVariant.lastThreeRhymingSyllables);
+        }
+    }
+
+    static void assertSameRhymes(String word, List<RhymeResult> expected, List<RhymeResult> actual) {
+        Assert.assertEquals(word, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            RhymeResult expectedResult = expected.get(i);
+            RhymeResult actualResult = actual.get(i);
+            Assert.assertEquals(word, expectedResult.variantNumber, actualResult.variantNumber);
+            Assert.assertArrayEquals(word, expectedResult.strictRhymes, actualResult.strictRhymes);
+            Assert.assertArrayEquals(word, expectedResult.oneSyllableRhymes, actualResult.oneSyllableRhymes);
+            Assert.assertArrayEquals(word, expectedResult.twoSyllableRhymes, actualResult.twoSyllableRhymes);
+            Assert.assertArrayEquals(word, expectedResult.threeSyllableRhymes, actualResult.threeSyllableRhymes);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+public class TestMappedRhymer {
+
+    /**
+     * Make sure the mapped rhymer finds the same words and rhymes as the rhymer it was written from.
+     */
+    @Test
+    public void testMappedRhymer() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        File indexFile = File.createTempFile("rhymer", ".index");
+        try {
+            OutputStream os = new FileOutputStream(indexFile);
+            try {
+                rhymer.writeIndex(os);
+            } finally {
+                os.close();
+            }
+            MappedRhymer mappedRhymer = new MappedRhymer(indexFile);
+            Assert.assertEquals(rhymer.getWords().size(), mappedRhymer.getWordCount());
+            Assert.assertNull(mappedRhymer.getWordVariants("notaword"));
+            Assert.assertTrue(mappedRhymer.getRhymingWords("notaword").isEmpty());
+            int i = 0;
+            for (String word : new TreeSet<>(rhymer.getWords())) {
+                TestIndexFile.assertSameVariants(word, rhymer.getWordVariants(word), mappedRhymer.getWordVariants(word));
+                if (i++ % 100 == 0) {
+                    TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 50), mappedRhymer.getRhymingWords(word, 50));
+                }
+            }
+            for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate")) {
+                TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word), mappedRhymer.getRhymingWords(word));
+            }
+        } finally {
+            Assert.assertTrue(indexFile.delete() || !indexFile.exists());
+        }
+    }
+}
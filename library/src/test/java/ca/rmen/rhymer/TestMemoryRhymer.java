@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TestMemoryRhymer {
+
+    /**
+     * The updated rhymer should have the same index as a rhymer built with the changed words, and the rhymer which
+     * was updated shouldn't change.
+     */
+    @Test
+    public void testUpdate() throws IOException {
+        testUpdate((MemoryRhymer) CmuDictionary.loadRhymer(), (MemoryRhymer) CmuDictionary.loadRhymer(), new MemoryRhymer());
+    }
+
+    /**
+     * The indexes which aren't built yet should be built with the changed words.
+     */
+    @Test
+    public void testUpdateLazyIndexes() throws IOException {
+        Set<RhymeType> rhymeTypes = EnumSet.of(RhymeType.STRICT, RhymeType.TWO_SYLLABLES);
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(rhymeTypes);
+        // Only build the strict rhyme index.
+        rhymer.getWordsWithLastStressSyllable(rhymer.getWordVariants("puppy").get(0).lastStressRhymingSyllables);
+        testUpdate(rhymer, (MemoryRhymer) CmuDictionary.loadRhymer(rhymeTypes), new MemoryRhymer(rhymeTypes));
+    }
+
+    @Test
+    public void testPutAndRemoveWord() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        MemoryRhymer updatedRhymer = rhymer.putWord("zuppy", rhymer.getWordVariants("puppy"));
+        Assert.assertTrue(Arrays.asList(updatedRhymer.getRhymingWords("puppy").get(0).strictRhymes).contains("zuppy"));
+        Assert.assertFalse(Arrays.asList(rhymer.getRhymingWords("puppy").get(0).strictRhymes).contains("zuppy"));
+
+        updatedRhymer = updatedRhymer.removeWord("puppy");
+        Assert.assertTrue(updatedRhymer.getRhymingWords("puppy").isEmpty());
+        Assert.assertFalse(Arrays.asList(updatedRhymer.getRhymingWords("zuppy").get(0).strictRhymes).contains("puppy"));
+    }
+
+    /**
+     * The updated rhymer should keep the pronunciation guesser, and find the rhymes of the guessed words among the
+     * changed words.
+     */
+    @Test
+    public void testUpdateKeepsPronunciationGuesser() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        final List<WordVariant> puppyVariants = rhymer.getWordVariants("puppy");
+        PronunciationGuesser guesser = new PronunciationGuesser() {
+            @Override
+            public List<WordVariant> guessWordVariants(Rhymer queryingRhymer, String word) {
+                return puppyVariants;
+            }
+        };
+        rhymer.setPronunciationGuesser(guesser);
+        MemoryRhymer updatedRhymer = rhymer.putWord("zuppy", puppyVariants);
+        Assert.assertSame(guesser, updatedRhymer.getPronunciationGuesser());
+        Assert.assertTrue(Arrays.asList(updatedRhymer.getRhymingWords("yuppy").get(0).strictRhymes).contains("zuppy"));
+        Assert.assertSame(guesser, updatedRhymer.removeWord("zuppy").getPronunciationGuesser());
+    }
+
+    /**
+     * The added words should be indexed when the built indexes are empty, or don't have their keys.
+     */
+    @Test
+    public void testUpdateWithNewKeys() throws IOException {
+        MemoryRhymer dictionary = (MemoryRhymer) CmuDictionary.loadRhymer();
+        Map<String, List<WordVariant>> putWords = new HashMap<>();
+        putWords.put("cat", dictionary.getWordVariants("cat"));
+        putWords.put("hat", dictionary.getWordVariants("hat"));
+        for (String word : Arrays.asList(null, "dog")) {
+            Map<String, List<WordVariant>> words = new HashMap<>();
+            if (word != null) words.put(word, dictionary.getWordVariants(word));
+            MemoryRhymer rhymer = new MemoryRhymer();
+            rhymer.buildIndex(dictionary.getPhoneTable(), words);
+            MemoryRhymer updatedRhymer = rhymer.update(putWords, Collections.<String>emptyList());
+            Assert.assertArrayEquals(new String[]{"hat"}, updatedRhymer.getRhymingWords("cat").get(0).strictRhymes);
+            Assert.assertTrue(rhymer.getRhymingWords("cat").isEmpty());
+
+            words.putAll(putWords);
+            MemoryRhymer expectedRhymer = new MemoryRhymer();
+            expectedRhymer.buildIndex(dictionary.getPhoneTable(), words);
+            Assert.assertArrayEquals(getIndex(expectedRhymer), getIndex(updatedRhymer));
+        }
+    }
+
+    /**
+     * @param unchangedRhymer a rhymer with the same words as the updated rhymer.
+     * @param expectedRhymer  an empty rhymer, which will be built with the changed words.
+     */
+    private static void testUpdate(MemoryRhymer rhymer, MemoryRhymer unchangedRhymer, MemoryRhymer expectedRhymer) throws IOException {
+        Map<String, List<WordVariant>> putWords = new HashMap<>();
+        // A new first word, a new last word, and a word with new variants.
+        putWords.put("aaaaa", rhymer.getWordVariants("telephone"));
+        putWords.put("zzzzzuppy", rhymer.getWordVariants("puppy"));
+        putWords.put("happy", rhymer.getWordVariants("cat"));
+        List<String> removedWords = Arrays.asList("puppy", "tuesday", "notaword");
+        MemoryRhymer updatedRhymer = rhymer.update(putWords, removedWords);
+
+        Map<String, List<WordVariant>> words = new HashMap<>();
+        for (String word : rhymer.getWords()) words.put(word, rhymer.getWordVariants(word));
+        words.keySet().removeAll(removedWords);
+        words.putAll(putWords);
+        expectedRhymer.buildIndex(rhymer.getPhoneTable(), words);
+        Assert.assertArrayEquals(getIndex(expectedRhymer), getIndex(updatedRhymer));
+        Assert.assertArrayEquals(getIndex(unchangedRhymer), getIndex(rhymer));
+        for (String word : Arrays.asList("cat", "happy", "puppy", "zzzzzuppy", "telephone", "aaaaa")) {
+            TestIndexFile.assertSameRhymes(word, expectedRhymer.getRhymingWords(word), updatedRhymer.getRhymingWords(word));
+        }
+    }
+
+    private static byte[] getIndex(MemoryRhymer rhymer) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeIndex(os);
+        return os.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+public class TestPrecomputedRhymer {
+
+    /**
+     * The precomputed rhymes should be the same as the rhymes found with the index.
+     */
+    @Test
+    public void testPrecomputedRhymes() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeResults(os, 20);
+        PrecomputedRhymer precomputedRhymer = new PrecomputedRhymer(ByteBuffer.wrap(os.toByteArray()));
+        Assert.assertEquals(20, precomputedRhymer.getMaxResults());
+
+        int i = 0;
+        for (String word : new TreeSet<>(rhymer.getWords())) {
+            if (i++ % 50 == 0) {
+                TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 20), precomputedRhymer.getRhymingWords(word, 20));
+            }
+        }
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate", "notaword")) {
+            for (int maxResults : new int[]{-1, 0, 1, 5, 20, 21}) {
+                TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, maxResults), precomputedRhymer.getRhymingWords(word, maxResults));
+            }
+            TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 5, 10), precomputedRhymer.getRhymingWords(word, 5, 10));
+            TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word, 15, 10), precomputedRhymer.getRhymingWords(word, 15, 10));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadIndexWithoutResults() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeIndex(os);
+        new PrecomputedRhymer(ByteBuffer.wrap(os.toByteArray()));
+    }
+}
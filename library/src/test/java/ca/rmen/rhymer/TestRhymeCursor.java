@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRhymeCursor {
+
+    /**
+     * Iterating over the cursors should return the same rhymes as the full results.
+     */
+    @Test
+    public void testCursors() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate")) {
+            List<RhymeResult> results = rhymer.getRhymingWords(word);
+            for (RhymeType rhymeType : RhymeType.values()) {
+                List<RhymeCursor> cursors = rhymer.getRhymeCursors(word, rhymeType);
+                Assert.assertEquals(word, results.size(), cursors.size());
+                for (int i = 0; i < results.size(); i++) {
+                    RhymeCursor cursor = cursors.get(i);
+                    Assert.assertEquals(word, results.get(i).variantNumber, cursor.getVariantNumber());
+                    Assert.assertEquals(word, rhymeType, cursor.getRhymeType());
+                    List<String> rhymes = new ArrayList<>();
+                    while (cursor.hasNext()) rhymes.add(cursor.next());
+                    Assert.assertEquals(word, Arrays.asList(getRhymes(results.get(i), rhymeType)), rhymes);
+                }
+            }
+        }
+        Assert.assertTrue(rhymer.getRhymeCursors("notaword", RhymeType.STRICT).isEmpty());
+    }
+
+    /**
+     * The pages of the rhymes should add up to the full results.
+     */
+    @Test
+    public void testPages() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        final int pageSize = 7;
+        for (String word : Arrays.asList("puppy", "happy", "tuesday")) {
+            List<RhymeResult> results = rhymer.getRhymingWords(word);
+            for (RhymeType rhymeType : RhymeType.values()) {
+                for (RhymeResult result : results) {
+                    String[] rhymes = getRhymes(result, rhymeType);
+                    for (int offset = 0; offset < rhymes.length; offset += pageSize) {
+                        String[] expected = Arrays.copyOfRange(rhymes, offset, Math.min(rhymes.length, offset + pageSize));
+                        Assert.assertArrayEquals(word, expected, getPage(rhymer, word, result.variantNumber, rhymeType, offset, pageSize));
+
+                        RhymeCursor cursor = rhymer.getRhymeCursors(word, rhymeType).get(results.indexOf(result));
+                        Assert.assertEquals(word, offset, cursor.skip(offset));
+                        Assert.assertArrayEquals(word, expected, cursor.next(pageSize));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkipPastTheEnd() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        RhymeCursor cursor = rhymer.getRhymeCursors("happy", RhymeType.STRICT).get(0);
+        int size = rhymer.getRhymingWords("happy").get(0).strictRhymes.length;
+        Assert.assertEquals(size, cursor.skip(size + 10));
+        Assert.assertFalse(cursor.hasNext());
+        Assert.assertEquals(0, cursor.next(10).length);
+    }
+
+    private static String[] getPage(Rhymer rhymer, String word, int variantNumber, RhymeType rhymeType, int offset, int limit) {
+        for (RhymeResult result : rhymer.getRhymingWords(word, offset, limit)) {
+            if (result.variantNumber == variantNumber) return getRhymes(result, rhymeType);
+        }
+        return new String[0];
+    }
+
+    private static String[] getRhymes(RhymeResult result, RhymeType rhymeType) {
+        switch (rhymeType) {
+            case STRICT:
+                return result.strictRhymes;
+            case ONE_SYLLABLE:
+                return result.oneSyllableRhymes;
+            case TWO_SYLLABLES:
+                return result.twoSyllableRhymes;
+            default:
+                return result.threeSyllableRhymes;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRhymeSchemeAnalyzer {
+
+    @Test
+    public void testRhymeScheme() throws IOException {
+        RhymeSchemeAnalyzer analyzer = new RhymeSchemeAnalyzer(CmuDictionary.loadRhymer());
+        Assert.assertEquals("ABCB", getRhymeScheme(analyzer, "Roses are red,", "Violets are blue,", "Sugar is sweet,", "And so are you."));
+        // An empty line starts a new stanza.
+        LineRhymeResult result = analyzer.addLine("");
+        Assert.assertEquals(4, result.lineNumber);
+        Assert.assertNull(result.endWord);
+        Assert.assertNull(result.label);
+        Assert.assertEquals("AABB", getRhymeScheme(analyzer, "I saw a cat", "It wore a hat", "It ran away", "Then came back today!"));
+        // Unknown words only rhyme with themselves.  Happy and sadly only rhyme on an unstressed syllable.
+        analyzer.addLine(" ");
+        Assert.assertEquals("ABABCD", getRhymeScheme(analyzer, "zzxq", "qxzz", "'zzxq'", "Qxzz", "so happy", "sadly"));
+    }
+
+    @Test
+    public void testRhymingLines() throws IOException {
+        RhymeSchemeAnalyzer analyzer = new RhymeSchemeAnalyzer(CmuDictionary.loadRhymer());
+        analyzer.addLine("We should recuperate");
+        analyzer.addLine("and take a break,");
+        LineRhymeResult result = analyzer.addLine("then we'll cooperate.");
+        Assert.assertEquals(2, result.lineNumber);
+        Assert.assertEquals("cooperate", result.endWord);
+        Assert.assertEquals("A", result.label);
+        Assert.assertEquals(0, result.rhymingLineNumber);
+        Assert.assertEquals(RhymeType.TWO_SYLLABLES, result.rhymeType);
+        result = analyzer.addLine("For goodness' sake");
+        Assert.assertEquals("B", result.label);
+        Assert.assertEquals(1, result.rhymingLineNumber);
+        Assert.assertEquals(RhymeType.STRICT, result.rhymeType);
+        result = analyzer.addLine("Nothing rhymes with orange");
+        Assert.assertEquals("C", result.label);
+        Assert.assertEquals(-1, result.rhymingLineNumber);
+        Assert.assertNull(result.rhymeType);
+    }
+
+    /**
+     * Lines should only be compared with the given number of previous lines.
+     */
+    @Test
+    public void testMaxLines() throws IOException {
+        RhymeSchemeAnalyzer analyzer = new RhymeSchemeAnalyzer(CmuDictionary.loadRhymer(), 2);
+        Assert.assertEquals("ABCD", getRhymeScheme(analyzer, "cat", "dog", "fish", "hat"));
+        Assert.assertEquals("C", analyzer.addLine("dish").label);
+    }
+
+    @Test
+    public void testInternalRhymes() throws IOException {
+        RhymeSchemeAnalyzer analyzer = new RhymeSchemeAnalyzer(CmuDictionary.loadRhymer());
+        LineRhymeResult result = analyzer.addLine("The rain in Spain stays mainly in the plain");
+        List<String> internalRhymes = new ArrayList<>();
+        for (InternalRhyme internalRhyme : result.internalRhymes) {
+            Assert.assertEquals(RhymeType.STRICT, internalRhyme.rhymeType);
+            internalRhymes.add(internalRhyme.word1 + " " + internalRhyme.word2);
+        }
+        Assert.assertEquals(Arrays.asList("rain spain", "rain plain", "spain plain"), internalRhymes);
+        Assert.assertTrue(analyzer.addLine("No rhymes here").internalRhymes.isEmpty());
+    }
+
+    private static String getRhymeScheme(RhymeSchemeAnalyzer analyzer, String... lines) {
+        StringBuilder rhymeScheme = new StringBuilder();
+        for (String line : lines) rhymeScheme.append(analyzer.addLine(line).label);
+        return rhymeScheme.toString();
+    }
+}
@@ -25,8 +25,17 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TestRhymer {
 
@@ -56,6 +65,369 @@ public class TestRhymer {
         testShouldntRhyme(rhymer, "puppy", "happy", 500);
     }
 
+    /**
+     * The type of rhyme of two words should be the type in which the second word is in the rhymes of the first word.
+     */
+    @Test
+    public void testDoRhyme() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        RhymeType[] bestFirst = {RhymeType.STRICT, RhymeType.THREE_SYLLABLES, RhymeType.TWO_SYLLABLES, RhymeType.ONE_SYLLABLE};
+        for (String word : Arrays.asList("puppy", "tuesday", "recuperate", "time")) {
+            Map<String, RhymeType> expected = new HashMap<>();
+            for (RhymeResult result : rhymer.getRhymingWords(word)) {
+                for (RhymeType rhymeType : bestFirst) {
+                    for (String rhyme : getRhymes(result, rhymeType)) {
+                        if (!expected.containsKey(rhyme)) expected.put(rhyme, rhymeType);
+                    }
+                }
+            }
+            List<String> words = new ArrayList<>();
+            List<String> rhymes = new ArrayList<>();
+            for (Map.Entry<String, RhymeType> entry : expected.entrySet()) {
+                Assert.assertEquals(word + ", " + entry.getKey(), entry.getValue(), rhymer.doRhyme(word, entry.getKey()));
+                words.add(word);
+                rhymes.add(entry.getKey());
+            }
+            Assert.assertArrayEquals(word, expected.values().toArray(), rhymer.doRhyme(words, rhymes));
+        }
+        Assert.assertEquals(RhymeType.STRICT, rhymer.doRhyme("Puppy", "puppy"));
+        Assert.assertNull(rhymer.doRhyme("puppy", "cat"));
+        Assert.assertNull(rhymer.doRhyme("puppy", "notaword"));
+        Assert.assertArrayEquals(new RhymeType[]{RhymeType.STRICT, null, null, RhymeType.ONE_SYLLABLE},
+                rhymer.doRhyme(Arrays.asList("cat", "cat", "notaword", "puppy"), Arrays.asList("hat", "dog", "notaword", "happy")));
+    }
+
+    /**
+     * A rhymer built with all the rhyme types, on first use, should return the same rhymes as the default rhymer.
+     */
+    @Test
+    public void testLazyIndexes() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        Rhymer lazyRhymer = CmuDictionary.loadRhymer(EnumSet.allOf(RhymeType.class));
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "recuperate", "notaword")) {
+            TestIndexFile.assertSameRhymes(word, rhymer.getRhymingWords(word), lazyRhymer.getRhymingWords(word));
+        }
+    }
+
+    /**
+     * A rhymer should only return the types of rhymes it was built for.
+     */
+    @Test
+    public void testStrictRhymesOnly() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        Rhymer strictRhymer = CmuDictionary.loadRhymer(EnumSet.of(RhymeType.STRICT));
+        for (String word : Arrays.asList("puppy", "happy", "cat")) {
+            List<RhymeResult> results = rhymer.getRhymingWords(word);
+            List<RhymeResult> strictResults = strictRhymer.getRhymingWords(word);
+            Assert.assertEquals(word, results.size(), strictResults.size());
+            for (int i = 0; i < results.size(); i++) {
+                Assert.assertArrayEquals(word, results.get(i).strictRhymes, strictResults.get(i).strictRhymes);
+                Assert.assertEquals(word, 0, strictResults.get(i).oneSyllableRhymes.length);
+                Assert.assertEquals(word, 0, strictResults.get(i).twoSyllableRhymes.length);
+                Assert.assertEquals(word, 0, strictResults.get(i).threeSyllableRhymes.length);
+            }
+        }
+    }
+
+    /**
+     * A batch query should return the same rhymes as querying each word, including for words which share
+     * the same rhyming syllables.
+     */
+    @Test
+    public void testBatchQuery() throws Exception {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        List<String> words = Arrays.asList("tray", "stray", "Tray", "puppy", "happy", "tuesday", "notaword", "tray");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int maxResults : new int[]{-1, 0, 1, 20}) {
+                Map<String, List<RhymeResult>> results = rhymer.getRhymingWords(words, maxResults);
+                Map<String, List<RhymeResult>> executorResults = rhymer.getRhymingWords(words, maxResults, executor);
+                Assert.assertEquals(Arrays.asList("tray", "stray", "Tray", "puppy", "happy", "tuesday", "notaword"),
+                        Arrays.asList(results.keySet().toArray()));
+                for (String word : words) {
+                    List<RhymeResult> expected = rhymer.getRhymingWords(word, maxResults);
+                    TestIndexFile.assertSameRhymes(word, expected, results.get(word));
+                    TestIndexFile.assertSameRhymes(word, expected, executorResults.get(word));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The best rhymes of a scorer should be the first rhymes, once all the rhymes are sorted by score.
+     */
+    @Test
+    public void testScoredRhymes() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        // Prefer short rhymes
+        RhymeScorer scorer = new RhymeScorer() {
+            @Override
+            public double getScore(String word, String rhyme) {
+                return -rhyme.length();
+            }
+        };
+        Comparator<String> byLength = new Comparator<String>() {
+            @Override
+            public int compare(String word1, String word2) {
+                return word1.length() - word2.length();
+            }
+        };
+        for (String word : Arrays.asList("puppy", "happy", "tuesday", "telephone", "notaword")) {
+            List<RhymeResult> results = rhymer.getRhymingWords(word);
+            for (int maxResults : new int[]{-1, 0, 1, 20}) {
+                List<RhymeResult> scoredResults = rhymer.getRhymingWords(word, maxResults, scorer);
+                List<RhymeResult> expectedResults = new ArrayList<>();
+                for (RhymeResult result : results) {
+                    RhymeResult expectedResult = new RhymeResult(result.variantNumber,
+                            getBest(result.strictRhymes, byLength, maxResults),
+                            getBest(result.oneSyllableRhymes, byLength, maxResults),
+                            getBest(result.twoSyllableRhymes, byLength, maxResults),
+                            getBest(result.threeSyllableRhymes, byLength, maxResults));
+                    if (expectedResult.strictRhymes.length > 0 || expectedResult.oneSyllableRhymes.length > 0
+                            || expectedResult.twoSyllableRhymes.length > 0 || expectedResult.threeSyllableRhymes.length > 0) {
+                        expectedResults.add(expectedResult);
+                    }
+                }
+                TestIndexFile.assertSameRhymes(word, expectedResults, scoredResults);
+            }
+        }
+    }
+
+    /**
+     * The slant rhymes should be the words whose last stressed syllables differ by one phone of the same type.
+     */
+    @Test
+    public void testSlantRhymes() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        // TIME  T AY1 M
+        // LINE  L AY1 N
+        List<SlantRhymeResult> results = rhymer.getSlantRhymes("time", -1);
+        Assert.assertEquals(1, results.size());
+        List<String> slantRhymes = Arrays.asList(results.get(0).slantRhymes);
+        Assert.assertTrue(slantRhymes.contains("line"));
+        Assert.assertFalse(slantRhymes.contains("rhyme"));
+        Assert.assertFalse(slantRhymes.contains("time"));
+        // TYPE  T AY1 P: P is a stop, M is a nasal.
+        Assert.assertFalse(slantRhymes.contains("type"));
+        Assert.assertEquals(5, rhymer.getSlantRhymes("time", 5).get(0).slantRhymes.length);
+        Assert.assertTrue(rhymer.getSlantRhymes("notaword", -1).isEmpty());
+
+        // Compare with all the words of the dictionary.
+        PhoneTable phoneTable = rhymer.getPhoneTable();
+        for (String word : Arrays.asList("time", "happy", "cat")) {
+            RhymeKey key = rhymer.getWordVariants(word).get(0).lastStressRhymingSyllables;
+            List<String> expected = new ArrayList<>();
+            for (String otherWord : new TreeSet<>(rhymer.getWords())) {
+                if (otherWord.equals(word)) continue;
+                boolean isStrictRhyme = false;
+                boolean isSlantRhyme = false;
+                for (WordVariant wordVariant : rhymer.getWordVariants(otherWord)) {
+                    RhymeKey otherKey = wordVariant.lastStressRhymingSyllables;
+                    if (key.equals(otherKey)) isStrictRhyme = true;
+                    else if (isSlantRhyme(phoneTable, key, otherKey)) isSlantRhyme = true;
+                }
+                if (isSlantRhyme && !isStrictRhyme) expected.add(otherWord);
+            }
+            Assert.assertEquals(word, expected, Arrays.asList(rhymer.getSlantRhymes(word, -1).get(0).slantRhymes));
+        }
+    }
+
+    /**
+     * The slant rhymes shouldn't depend on the rhyme types of the rhymer: strict rhymes are never slant rhymes.
+     */
+    @Test
+    public void testSlantRhymesWithoutStrictRhymes() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        MemoryRhymer oneSyllableRhymer = (MemoryRhymer) CmuDictionary.loadRhymer(EnumSet.of(RhymeType.ONE_SYLLABLE));
+        for (String word : Arrays.asList("time", "happy", "cat", "eye", "tuesday")) {
+            List<SlantRhymeResult> expected = rhymer.getSlantRhymes(word, -1);
+            List<SlantRhymeResult> results = oneSyllableRhymer.getSlantRhymes(word, -1);
+            Assert.assertEquals(word, expected.size(), results.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(word, expected.get(i).variantNumber, results.get(i).variantNumber);
+                Assert.assertArrayEquals(word, expected.get(i).slantRhymes, results.get(i).slantRhymes);
+            }
+        }
+        Assert.assertFalse(Arrays.asList(oneSyllableRhymer.getSlantRhymes("time", -1).get(0).slantRhymes).contains("rhyme"));
+    }
+
+    @Test
+    public void testEndingRhymes() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        // RECUPERATE  R IH0 K UW1 P ER0 EY2 T
+        // COOPERATE  K OW0 AA1 P ER0 EY2 T
+        EndingRhymeResult result = rhymer.getWordsWithLongestSharedEnding("recuperate", -1).get(0);
+        Assert.assertEquals(4, result.phoneCount);
+        Assert.assertTrue(Arrays.asList(result.rhymes).contains("cooperate"));
+        Assert.assertFalse(Arrays.asList(result.rhymes).contains("recuperate"));
+        Assert.assertEquals(2, rhymer.getWordsWithLastPhones("recuperate", 2, 2).get(0).rhymes.length);
+        Assert.assertTrue(rhymer.getWordsWithLastSyllables("notaword", 1, -1).isEmpty());
+        // The endings can be longer than the rhyming keys: CAT  K AE1 T, BOBCAT  B AA1 B K AE2 T
+        Assert.assertTrue(Arrays.asList(rhymer.getWordsWithLastPhones("cat", 3, -1).get(0).rhymes).contains("bobcat"));
+        // COMMUNICATION  K AH0 M Y UW2 N AH0 K EY1 SH AH0 N
+        result = rhymer.getWordsWithLastSyllables("communication", 4, -1).get(0);
+        Assert.assertEquals(8, result.phoneCount);
+        Assert.assertTrue(Arrays.asList(result.rhymes).contains("miscommunication"));
+        Assert.assertFalse(Arrays.asList(result.rhymes).contains("communication"));
+
+        // Compare with all the words of the dictionary.
+        for (String word : Arrays.asList("recuperate", "telephone", "puppy", "cat")) {
+            WordVariant wordVariant = rhymer.getWordVariants(word).get(0);
+            RhymeKey ending = getPronunciation(wordVariant);
+            for (RhymeType rhymeType : EnumSet.range(RhymeType.ONE_SYLLABLE, RhymeType.THREE_SYLLABLES)) {
+                RhymeKey key = rhymeType.getKey(wordVariant);
+                List<String> expected = new ArrayList<>();
+                for (String otherWord : new TreeSet<>(rhymer.getWords())) {
+                    if (otherWord.equals(word)) continue;
+                    for (WordVariant otherVariant : rhymer.getWordVariants(otherWord)) {
+                        if (key != null && key.equals(rhymeType.getKey(otherVariant))) {
+                            expected.add(otherWord);
+                            break;
+                        }
+                    }
+                }
+                List<EndingRhymeResult> results = rhymer.getWordsWithLastSyllables(word, rhymeType.ordinal(), -1);
+                Assert.assertEquals(word, expected, results.isEmpty() ? expected.subList(0, 0) : Arrays.asList(results.get(0).rhymes));
+            }
+
+            int longestSharedEnding = 0;
+            for (String otherWord : rhymer.getWords()) {
+                if (otherWord.equals(word)) continue;
+                for (WordVariant otherVariant : rhymer.getWordVariants(otherWord)) {
+                    longestSharedEnding = Math.max(longestSharedEnding, getSharedEnding(ending, getPronunciation(otherVariant)));
+                }
+            }
+            result = rhymer.getWordsWithLongestSharedEnding(word, -1).get(0);
+            Assert.assertEquals(word, longestSharedEnding, result.phoneCount);
+            Assert.assertArrayEquals(word, result.rhymes, rhymer.getWordsWithLastPhones(word, longestSharedEnding, -1).get(0).rhymes);
+            for (String rhyme : result.rhymes) {
+                boolean found = false;
+                for (WordVariant otherVariant : rhymer.getWordVariants(rhyme)) {
+                    if (getSharedEnding(ending, getPronunciation(otherVariant)) >= longestSharedEnding) found = true;
+                }
+                Assert.assertTrue(word + ", " + rhyme, found);
+            }
+        }
+    }
+
+    @Test
+    public void testPatterns() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        Assert.assertTrue(Arrays.asList(rhymer.getWordsWithRhymingKey(RhymeType.STRICT, "EY1 NASAL", -1)).contains("pain"));
+        Assert.assertTrue(Arrays.asList(rhymer.getWordsEndingWith("NASAL T", -1)).contains("paint"));
+        Assert.assertEquals(3, rhymer.getWordsEndingWith("NASAL T", 3).length);
+        Assert.assertArrayEquals(rhymer.getWordsWithRhymingKey(RhymeType.STRICT, "EY T", -1),
+                rhymer.getWordsWithRhymingKey(RhymeType.STRICT, " EY1  T ", -1));
+        for (String pattern : Arrays.asList("", "EY XX", "nasal")) {
+            try {
+                rhymer.getWordsEndingWith(pattern, -1);
+                Assert.fail(pattern);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        // Compare with all the words of the dictionary.
+        PhoneTable phoneTable = rhymer.getPhoneTable();
+        for (String pattern : Arrays.asList("EY1 T", "EY1 NASAL", "VOWEL NASAL T", "AH0 STOP IY0", "FRICATIVE")) {
+            String[] phones = pattern.split(" ");
+            for (RhymeType rhymeType : RhymeType.values()) {
+                List<String> expected = new ArrayList<>();
+                for (String word : new TreeSet<>(rhymer.getWords())) {
+                    for (WordVariant wordVariant : rhymer.getWordVariants(word)) {
+                        RhymeKey key = rhymeType.getKey(wordVariant);
+                        if (key != null && key.length() == phones.length && endsWith(phoneTable, key, phones)) {
+                            expected.add(word);
+                            break;
+                        }
+                    }
+                }
+                Assert.assertEquals(pattern, expected, Arrays.asList(rhymer.getWordsWithRhymingKey(rhymeType, pattern, -1)));
+            }
+            List<String> expected = new ArrayList<>();
+            for (String word : new TreeSet<>(rhymer.getWords())) {
+                for (WordVariant wordVariant : rhymer.getWordVariants(word)) {
+                    RhymeKey ending = getPronunciation(wordVariant);
+                    if (ending != null && endsWith(phoneTable, ending, phones)) {
+                        expected.add(word);
+                        break;
+                    }
+                }
+            }
+            Assert.assertEquals(pattern, expected, Arrays.asList(rhymer.getWordsEndingWith(pattern, -1)));
+        }
+    }
+
+    /**
+     * @return the whole pronunciation of the word variant, or null if it has no keys.
+     */
+    private static RhymeKey getPronunciation(WordVariant wordVariant) {
+        byte[] pronunciation = wordVariant.getPronunciation();
+        return pronunciation == null ? null : new RhymeKey(pronunciation);
+    }
+
+    /**
+     * @param phones phone symbols with stress, or phone types.
+     * @return true if the key ends with the given phones.
+     */
+    private static boolean endsWith(PhoneTable phoneTable, RhymeKey key, String[] phones) {
+        if (key.length() < phones.length) return false;
+        for (int i = 1; i <= phones.length; i++) {
+            int code = key.getPhone(key.length() - i);
+            String phone = phones[phones.length - i];
+            if (!phone.equals(phoneTable.getPhoneType(code).name()) && !phone.replaceAll("[0-9]", "").equals(phoneTable.getSymbol(code))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of phones at the end of both keys.
+     */
+    private static int getSharedEnding(RhymeKey key, RhymeKey otherKey) {
+        int length = 0;
+        while (length < key.length() && length < otherKey.length()
+                && key.getPhone(key.length() - 1 - length) == otherKey.getPhone(otherKey.length() - 1 - length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static boolean isSlantRhyme(PhoneTable phoneTable, RhymeKey key, RhymeKey otherKey) {
+        if (key.length() != otherKey.length()) return false;
+        int differences = 0;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.getPhone(i) == otherKey.getPhone(i)) continue;
+            if (phoneTable.getPhoneType(key.getPhone(i)) != phoneTable.getPhoneType(otherKey.getPhone(i))) return false;
+            differences++;
+        }
+        return differences == 1;
+    }
+
+    private static String[] getBest(String[] rhymes, Comparator<String> comparator, int maxResults) {
+        List<String> sortedRhymes = new ArrayList<>(Arrays.asList(rhymes));
+        // The sort is stable: rhymes with the same score stay in alphabetical order.
+        Collections.sort(sortedRhymes, comparator);
+        if (maxResults >= 0 && sortedRhymes.size() > maxResults) sortedRhymes = sortedRhymes.subList(0, maxResults);
+        return sortedRhymes.toArray(new String[sortedRhymes.size()]);
+    }
+
+    private static String[] getRhymes(RhymeResult result, RhymeType rhymeType) {
+        switch (rhymeType) {
+            case STRICT:
+                return result.strictRhymes;
+            case ONE_SYLLABLE:
+                return result.oneSyllableRhymes;
+            case TWO_SYLLABLES:
+                return result.twoSyllableRhymes;
+            default:
+                return result.threeSyllableRhymes;
+        }
+    }
+
     private void testShouldRhyme(Rhymer rhymer, String word1, String word2, int numberOfSyllables) {
         List<RhymeResult> results = rhymer.getRhymingWords(word1);
         Assert.assertTrue(results.size() == 1);
@@ -63,6 +435,8 @@ public class TestRhymer {
         String[] rhymes = numberOfSyllables == 0? result.strictRhymes : numberOfSyllables == 1? result.oneSyllableRhymes : numberOfSyllables == 2 ? result.twoSyllableRhymes : result.threeSyllableRhymes;
         List<String> rhymingWords = Arrays.asList(rhymes);
         Assert.assertTrue(word1 + " should rhyme with " + word2, rhymingWords.contains(word2));
+        RhymeType rhymeType = numberOfSyllables == 0 ? RhymeType.STRICT : RhymeType.values()[numberOfSyllables];
+        Assert.assertEquals(word1 + " should rhyme with " + word2, rhymeType, rhymer.doRhyme(word1, word2));
     }
 
     private void testShouldntRhyme(Rhymer rhymer, String word1, String word2, int limit) {
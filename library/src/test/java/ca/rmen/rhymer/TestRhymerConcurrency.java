@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TestRhymerConcurrency {
+
+    private static final int QUERY_COUNT = 1000000;
+    private static final int MAX_RESULTS = 20;
+    private static final int SAMPLE_WORD_STEP = 97;
+
+    /**
+     * Run a million queries from several threads, and make sure that every query returns the same results as
+     * a single-threaded query, and that the index is left untouched.
+     */
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        final MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        byte[] indexDigestBefore = digestIndex(rhymer);
+
+        final List<String> queryWords = getQueryWords(rhymer);
+        final List<List<RhymeResult>> expectedResults = new ArrayList<>();
+        for (String queryWord : queryWords) {
+            expectedResults.add(rhymer.getRhymingWords(queryWord, MAX_RESULTS));
+        }
+
+        int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int queriesPerThread = QUERY_COUNT / threadCount;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                final int threadNumber = i;
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int mismatches = 0;
+                        for (int j = 0; j < queriesPerThread; j++) {
+                            int wordIndex = (threadNumber + j * 31) % queryWords.size();
+                            List<RhymeResult> results = rhymer.getRhymingWords(queryWords.get(wordIndex), MAX_RESULTS);
+                            if (!isSame(expectedResults.get(wordIndex), results)) mismatches++;
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(0, future.get().intValue());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        byte[] indexDigestAfter = digestIndex(rhymer);
+        Assert.assertArrayEquals("The index was modified by the queries", indexDigestBefore, indexDigestAfter);
+    }
+
+    /**
+     * Query a rhymer which builds its indexes on first use, from several threads at the same time.
+     */
+    @Test
+    public void testConcurrentLazyIndexes() throws Exception {
+        final Rhymer rhymer = CmuDictionary.loadRhymer(EnumSet.allOf(RhymeType.class));
+        final List<RhymeResult> expectedResults = CmuDictionary.loadRhymer().getRhymingWords("recuperate", MAX_RESULTS);
+        int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws InterruptedException {
+                        startSignal.await();
+                        return isSame(expectedResults, rhymer.getRhymingWords("recuperate", MAX_RESULTS));
+                    }
+                }));
+            }
+            startSignal.countDown();
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Querying a word shouldn't affect the results of a second query.
+     */
+    @Test
+    public void testRepeatedQueries() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        List<RhymeResult> firstResults = rhymer.getRhymingWords("puppy");
+        List<RhymeResult> secondResults = rhymer.getRhymingWords("puppy");
+        Assert.assertTrue(isSame(firstResults, secondResults));
+        Assert.assertFalse(Arrays.asList(firstResults.get(0).strictRhymes).contains("puppy"));
+    }
+
+    /**
+     * @return a sample of the dictionary, including some words with a lot of rhymes.
+     */
+    private static List<String> getQueryWords(MemoryRhymer rhymer) {
+        List<String> queryWords = new ArrayList<>();
+        queryWords.add("puppy");
+        queryWords.add("happy");
+        queryWords.add("tuesday");
+        queryWords.add("telephone");
+        queryWords.add("notaword");
+        int i = 0;
+        for (String word : new TreeSet<>(rhymer.getWords())) {
+            if (i++ % SAMPLE_WORD_STEP == 0) queryWords.add(word);
+        }
+        return queryWords;
+    }
+
+    /**
+     * @return a digest of all the words, word variants, and rhyming syllable indexes of the rhymer.
+     */
+    private static byte[] digestIndex(MemoryRhymer rhymer) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (String word : new TreeSet<>(rhymer.getWords())) {
+            update(digest, word);
+            for (WordVariant wordVariant : rhymer.getWordVariants(word)) {
+                update(digest, String.valueOf(wordVariant.variantNumber));
+                update(digest, rhymer.getWordsWithLastStressSyllable(wordVariant.lastStressRhymingSyllables));
+                update(digest, rhymer.getWordsWithLastSyllable(wordVariant.lastRhymingSyllable));
+                if (wordVariant.lastTwoRhymingSyllables != null) {
+                    update(digest, rhymer.getWordsWithLastTwoSyllables(wordVariant.lastTwoRhymingSyllables));
+                }
+                if (wordVariant.lastThreeRhymingSyllables != null) {
+                    update(digest, rhymer.getWordsWithLastThreeSyllables(wordVariant.lastThreeRhymingSyllables));
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(MessageDigest digest, IntBuffer wordIds) {
+        update(digest, String.valueOf(wordIds.limit()));
+        for (int i = 0; i < wordIds.limit(); i++) update(digest, String.valueOf(wordIds.get(i)));
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(Charset.forName("UTF-8")));
+        digest.update((byte) 0);
+    }
+
+    private static boolean isSame(List<RhymeResult> results1, List<RhymeResult> results2) {
+        if (results1.size() != results2.size()) return false;
+        for (int i = 0; i < results1.size(); i++) {
+            RhymeResult result1 = results1.get(i);
+            RhymeResult result2 = results2.get(i);
+            if (result1.variantNumber != result2.variantNumber
+                    || !Arrays.equals(result1.strictRhymes, result2.strictRhymes)
+                    || !Arrays.equals(result1.oneSyllableRhymes, result2.oneSyllableRhymes)
+                    || !Arrays.equals(result1.twoSyllableRhymes, result2.twoSyllableRhymes)
+                    || !Arrays.equals(result1.threeSyllableRhymes, result2.threeSyllableRhymes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
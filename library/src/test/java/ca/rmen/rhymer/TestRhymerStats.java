@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TestRhymerStats {
+
+    @Test
+    public void testStats() throws IOException {
+        RhymerStats stats = new RhymerStats();
+        Rhymer rhymer = CmuDictionary.loadRhymer(stats);
+        for (RhymerListener.LoadPhase loadPhase : RhymerListener.LoadPhase.values()) {
+            Assert.assertTrue(loadPhase.name(), stats.getLoadPhaseDuration(loadPhase) > 0);
+        }
+
+        // PUPPY  P AH1 P IY0
+        int puppyGroupSize = rhymer.getRhymingWords("puppy").get(0).oneSyllableRhymes.length;
+        rhymer.getRhymingWords("notaword");
+        rhymer.getRhymingWords("cat", 10);
+        Assert.assertEquals(3, stats.getQueryCount());
+        Assert.assertEquals(1, stats.getDictionaryMissCount());
+
+        // The one-syllable rhyme group of puppy contains at least its one-syllable rhymes.
+        long[] histogram = stats.getRhymeGroupHistogram(RhymeType.ONE_SYLLABLE);
+        long total = 0;
+        for (long count : histogram) total += count;
+        Assert.assertEquals(2, total);
+        int largestBucket = histogram.length - 1;
+        while (histogram[largestBucket] == 0) largestBucket--;
+        Assert.assertTrue(largestBucket >= RhymerStats.getBucket(puppyGroupSize));
+
+        // No more measurements once the listener is removed.
+        rhymer.setListener(null);
+        rhymer.getRhymingWords("puppy");
+        Assert.assertEquals(3, stats.getQueryCount());
+    }
+
+    /**
+     * A query of several words is measured as one query.
+     */
+    @Test
+    public void testBatchQueries() throws IOException, InterruptedException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        RhymerStats stats = new RhymerStats();
+        rhymer.setListener(stats);
+        List<String> words = Arrays.asList("puppy", "cat", "notaword");
+        rhymer.getRhymingWords(words, 10);
+        Assert.assertEquals(1, stats.getQueryCount());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            rhymer.getRhymingWords(words, 10, executor);
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(2, stats.getQueryCount());
+        Assert.assertEquals(2, stats.getDictionaryMissCount());
+
+        CachingRhymer cachingRhymer = new CachingRhymer(rhymer, 10);
+        RhymerStats cachingStats = new RhymerStats();
+        cachingRhymer.setListener(cachingStats);
+        cachingRhymer.getRhymingWords(words, 10);
+        Assert.assertEquals(1, cachingStats.getQueryCount());
+    }
+
+    /**
+     * Finding out if words rhyme is measured like the other queries.
+     */
+    @Test
+    public void testDoRhyme() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer();
+        RhymerStats stats = new RhymerStats();
+        rhymer.setListener(stats);
+        Assert.assertEquals(RhymeType.STRICT, rhymer.doRhyme("puppy", "guppy"));
+        Assert.assertNull(rhymer.doRhyme("notaword", "puppy"));
+        Assert.assertEquals(2, stats.getQueryCount());
+        rhymer.doRhyme(Arrays.asList("puppy", "cat"), Arrays.asList("guppy", "hat"));
+        Assert.assertEquals(3, stats.getQueryCount());
+        Assert.assertEquals(1, stats.getDictionaryMissCount());
+
+        CachingRhymer cachingRhymer = new CachingRhymer(rhymer, 10);
+        RhymerStats cachingStats = new RhymerStats();
+        cachingRhymer.setListener(cachingStats);
+        cachingRhymer.doRhyme("puppy", "guppy");
+        cachingRhymer.doRhyme(Arrays.asList("puppy", "cat"), Arrays.asList("guppy", "hat"));
+        Assert.assertEquals(2, cachingStats.getQueryCount());
+    }
+
+    /**
+     * The syllable indexes built on first use are measured when they are built.
+     */
+    @Test
+    public void testLazyIndexes() throws IOException {
+        Rhymer rhymer = CmuDictionary.loadRhymer(EnumSet.of(RhymeType.STRICT));
+        RhymerStats stats = new RhymerStats();
+        rhymer.setListener(stats);
+        Assert.assertEquals(0, stats.getLoadPhaseDuration(RhymerListener.LoadPhase.BUILD_INDEX));
+        rhymer.getRhymingWords("puppy");
+        Assert.assertTrue(stats.getLoadPhaseDuration(RhymerListener.LoadPhase.BUILD_INDEX) > 0);
+    }
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, RhymerStats.getBucket(0));
+        Assert.assertEquals(1, RhymerStats.getBucket(1));
+        Assert.assertEquals(2, RhymerStats.getBucket(2));
+        Assert.assertEquals(2, RhymerStats.getBucket(3));
+        Assert.assertEquals(11, RhymerStats.getBucket(1024));
+        Assert.assertEquals(63, RhymerStats.getBucket(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer;
+
+
+import ca.rmen.rhymer.cmu.CmuDictionary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestSpellingGuesser {
+
+    /**
+     * Words which aren't in the dictionary should rhyme with the words which end with the same letters.
+     */
+    @Test
+    public void testRhymesOfUnknownWords() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        Assert.assertTrue(rhymer.getRhymingWords("yeeted").isEmpty());
+        rhymer.setPronunciationGuesser(new SpellingGuesser(3, null));
+        List<RhymeResult> results = rhymer.getRhymingWords("yeeted");
+        Assert.assertEquals(1, results.size());
+        Assert.assertTrue(Arrays.asList(results.get(0).strictRhymes).contains("greeted"));
+        Assert.assertTrue(Arrays.asList(rhymer.getRhymingWords("bussin").get(0).strictRhymes).contains("russin"));
+    }
+
+    /**
+     * A known word is guessed from the other words, like an unknown word.
+     */
+    @Test
+    public void testGuessKnownWords() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        SpellingGuesser guesser = new SpellingGuesser(3, null);
+        for (String word : Arrays.asList("station", "happy", "puppy")) {
+            WordVariant expected = rhymer.getWordVariants(word).get(0);
+            WordVariant guessed = guesser.guessWordVariants(rhymer, word).get(0);
+            Assert.assertEquals(word, expected.lastStressRhymingSyllables, guessed.lastStressRhymingSyllables);
+        }
+    }
+
+    /**
+     * The guesser should guess from the words of the rhymer which looks up the word, like a rhymer returned by
+     * {@link MemoryRhymer#putWord(String, List)}.
+     */
+    @Test
+    public void testGuessFromAddedWords() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        rhymer.setPronunciationGuesser(new SpellingGuesser(3, null));
+        List<WordVariant> puppyVariants = rhymer.getWordVariants("puppy");
+        MemoryRhymer updatedRhymer = rhymer.putWord("blorfy", puppyVariants);
+        List<RhymeResult> results = updatedRhymer.getRhymingWords("zblorfy");
+        Assert.assertTrue(Arrays.asList(results.get(0).strictRhymes).contains("puppy"));
+        Assert.assertTrue(Arrays.asList(results.get(0).strictRhymes).contains("blorfy"));
+        // The rhymer which was updated doesn't have the added word: no word ends with enough of these letters.
+        Assert.assertTrue(rhymer.getRhymingWords("zblorfy").isEmpty());
+    }
+
+    /**
+     * The words which don't share enough letters with a known word should be guessed by the fallback.
+     */
+    @Test
+    public void testFallback() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        Assert.assertNull(new SpellingGuesser(3, null).guessWordVariants(rhymer, "xqzt"));
+        Assert.assertNull(new SpellingGuesser(20, null).guessWordVariants(rhymer, "yeeted"));
+        final List<WordVariant> fallbackVariants = rhymer.getWordVariants("puppy");
+        SpellingGuesser guesser = new SpellingGuesser(3, new PronunciationGuesser() {
+            @Override
+            public List<WordVariant> guessWordVariants(Rhymer queryingRhymer, String word) {
+                return fallbackVariants;
+            }
+        });
+        Assert.assertSame(fallbackVariants, guesser.guessWordVariants(rhymer, "xqzt"));
+        Assert.assertNotSame(fallbackVariants, guesser.guessWordVariants(rhymer, "yeeted"));
+        Assert.assertEquals(Collections.emptyList(), rhymer.getRhymingWords("xqzt"));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.rmen.rhymer.cmu;
+
+
+import ca.rmen.rhymer.MemoryRhymer;
+import ca.rmen.rhymer.WordVariant;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestCmuDictionary {
+
+    /**
+     * The rhymer loaded in parallel should be the same as the one loaded on a single thread: same words,
+     * same word variants, and same indexes.
+     */
+    @Test
+    public void testParallelLoadRhymer() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MemoryRhymer parallelRhymer = (MemoryRhymer) CmuDictionary.loadRhymer(pool);
+            Assert.assertEquals(rhymer.getWords(), parallelRhymer.getWords());
+            Assert.assertArrayEquals(writeIndex(rhymer), writeIndex(parallelRhymer));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A single source should give the same rhymer as the CMU dictionary.
+     */
+    @Test
+    public void testLoadSource() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        MemoryRhymer sourceRhymer = (MemoryRhymer) CmuDictionary.loadRhymer(
+                Arrays.asList(DictionarySource.cmuDictionary()), MergePolicy.REPLACE);
+        Assert.assertArrayEquals(writeIndex(rhymer), writeIndex(sourceRhymer));
+    }
+
+    @Test
+    public void testMergeSources() throws IOException {
+        byte[] overlay = ("PUPPY  K AE1 T\n"
+                + "ZUPPY  P AH1 P IY0\n"
+                + "TOMATO  T AH0 M EY1 T OW2\n").getBytes(Charset.forName("UTF-8"));
+        File overlayFile = File.createTempFile("overlay", ".txt");
+        try {
+            FileOutputStream os = new FileOutputStream(overlayFile);
+            try {
+                os.write(overlay);
+            } finally {
+                os.close();
+            }
+
+            // TOMATO  T AH0 M EY1 T OW2
+            // TOMATO(1)  T AH0 M AA1 T OW2
+            MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(
+                    Arrays.asList(DictionarySource.cmuDictionary(), DictionarySource.fromFile(overlayFile)), MergePolicy.REPLACE);
+            Assert.assertEquals(Arrays.asList("AE T"), getStrictKeys(rhymer, "puppy"));
+            Assert.assertEquals(Arrays.asList("AH P IY"), getStrictKeys(rhymer, "zuppy"));
+            Assert.assertEquals(Arrays.asList("EY T OW"), getStrictKeys(rhymer, "tomato"));
+
+            rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(
+                    Arrays.asList(DictionarySource.cmuDictionary(), DictionarySource.fromStream(new ByteArrayInputStream(overlay))),
+                    MergePolicy.KEEP_FIRST);
+            Assert.assertEquals(Arrays.asList("AH P IY"), getStrictKeys(rhymer, "puppy"));
+            Assert.assertEquals(Arrays.asList("AH P IY"), getStrictKeys(rhymer, "zuppy"));
+            Assert.assertEquals(Arrays.asList("EY T OW", "AA T OW"), getStrictKeys(rhymer, "tomato"));
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                rhymer = (MemoryRhymer) CmuDictionary.loadRhymer(
+                        Arrays.asList(DictionarySource.cmuDictionary(), DictionarySource.fromBuffer(ByteBuffer.wrap(overlay))),
+                        MergePolicy.APPEND, pool);
+            } finally {
+                pool.shutdown();
+            }
+            Assert.assertEquals(Arrays.asList("AH P IY", "AE T"), getStrictKeys(rhymer, "puppy"));
+            Assert.assertEquals(1, rhymer.getWordVariants("puppy").get(1).variantNumber);
+            Assert.assertEquals(Arrays.asList("EY T OW", "AA T OW"), getStrictKeys(rhymer, "tomato"));
+            Assert.assertTrue(Arrays.asList(rhymer.getRhymingWords("cat").get(0).strictRhymes).contains("puppy"));
+        } finally {
+            Assert.assertTrue(overlayFile.delete());
+        }
+    }
+
+    private static List<String> getStrictKeys(MemoryRhymer rhymer, String word) {
+        List<String> keys = new ArrayList<>();
+        for (WordVariant wordVariant : rhymer.getWordVariants(word)) {
+            keys.add(rhymer.getPhoneTable().toString(wordVariant.lastStressRhymingSyllables));
+        }
+        return keys;
+    }
+
+    private static byte[] writeIndex(MemoryRhymer rhymer) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        rhymer.writeIndex(os);
+        return os.toByteArray();
+    }
+}
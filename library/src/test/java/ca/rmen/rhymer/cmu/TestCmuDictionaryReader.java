@@ -20,13 +20,19 @@
 package ca.rmen.rhymer.cmu;
 
 
+import ca.rmen.rhymer.PhoneTable;
 import ca.rmen.rhymer.PhoneType;
 import ca.rmen.rhymer.WordVariant;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,8 +46,24 @@ public class TestCmuDictionaryReader {
     }
 
     public static Map<String, List<WordVariant>> readWords() throws IOException {
-        SyllableParser syllableParser = new SyllableParser(readPhones());
-        return CmuDictionaryReader.readWords(syllableParser, new FileInputStream(WORDS_FILE));
+        return readWords(CmuDictionaryReader.read(new FileInputStream(WORDS_FILE)));
+    }
+
+    private static Map<String, List<WordVariant>> readWords(ByteBuffer buffer) throws IOException {
+        SyllableParser syllableParser = new SyllableParser(new PhoneTable(readPhones()));
+        final Map<String, List<WordVariant>> words = new HashMap<>();
+        CmuDictionaryReader.readWords(syllableParser, buffer, new CmuDictionaryReader.WordVariantSink() {
+            @Override
+            public void onWordVariant(String word, WordVariant wordVariant) {
+                List<WordVariant> wordVariants = words.get(word);
+                if (wordVariants == null) {
+                    wordVariants = new ArrayList<>();
+                    words.put(word, wordVariants);
+                }
+                wordVariants.add(wordVariant);
+            }
+        });
+        return words;
     }
 
     /**
@@ -63,27 +85,95 @@ public class TestCmuDictionaryReader {
      */
     @Test
     public void testLoadWords() throws IOException {
+        PhoneTable phoneTable = new PhoneTable(readPhones());
         Map<String, List<WordVariant>> words = readWords();
         Assert.assertNotNull(words);
         Assert.assertEquals(125074, words.size());
         // ZYNDA  Z IH1 N D AH0
-        testWordSyllables("zynda", "AH", "IHNDAH", null, words);
+        testWordSyllables("zynda", "AH", "IH N D AH", null, phoneTable, words);
         // ZYMAN  Z AY1 M AH0 N
-        testWordSyllables("zyman", "AHN", "AYMAHN", null, words);
+        testWordSyllables("zyman", "AH N", "AY M AH N", null, phoneTable, words);
         // CAT  K AE1 T
-        testWordSyllables("cat", "AET", null, null, words);
+        testWordSyllables("cat", "AE T", null, null, phoneTable, words);
         //CELEBRATE  S EH1 L AH0 B R EY2 T
-        testWordSyllables("celebrate", "EYT", "AHBREYT", "EHLAHBREYT", words);
+        testWordSyllables("celebrate", "EY T", "AH B R EY T", "EH L AH B R EY T", phoneTable, words);
+    }
+
+    /**
+     * Test comments, variant numbers, and line endings.
+     */
+    @Test
+    public void testReadLines() throws IOException {
+        String dictionary = ";;; a comment\r\n"
+                + "\r\n"
+                + "TOMATO  T AH0 M EY1 T OW2\r\n"
+                + "TOMATO(1)  T AH0 M AA1 T OW2\n"
+                + "(PAREN  P ER0 EH1 N\n"
+                + "R2(12)  AA1 R T UW1";
+        Map<String, List<WordVariant>> words = readWords(ByteBuffer.wrap(dictionary.getBytes("UTF-8")));
+        Assert.assertEquals(3, words.size());
+        List<WordVariant> tomato = words.get("tomato");
+        Assert.assertEquals(2, tomato.size());
+        Assert.assertEquals(0, tomato.get(0).variantNumber);
+        Assert.assertEquals(1, tomato.get(1).variantNumber);
+        Assert.assertNotEquals(tomato.get(0).lastStressRhymingSyllables, tomato.get(1).lastStressRhymingSyllables);
+        Assert.assertEquals(tomato.get(0).lastRhymingSyllable, tomato.get(1).lastRhymingSyllable);
+        Assert.assertEquals(1, words.get("(paren").size());
+        Assert.assertEquals(12, words.get("r2").get(0).variantNumber);
+    }
+
+    /**
+     * Test that a dictionary read from a stream, in chunks of lines, has the same words as the whole dictionary.
+     */
+    @Test
+    public void testReadStream() throws IOException {
+        PhoneTable phoneTable = new PhoneTable(readPhones());
+        ByteBuffer buffer = CmuDictionaryReader.read(new FileInputStream(WORDS_FILE));
+        List<String> expected = new ArrayList<>();
+        CmuDictionaryReader.readWords(phoneTable, buffer, null, new ListSink(phoneTable, expected));
+        List<String> actual = new ArrayList<>();
+        CmuDictionaryReader.readWords(phoneTable, new FileInputStream(WORDS_FILE), null, new ListSink(phoneTable, actual));
+        Assert.assertEquals(expected, actual);
+
+        // A line longer than a chunk
+        StringBuilder dictionary = new StringBuilder(";;; ");
+        for (int i = 0; i < 1500000; i++) dictionary.append('x');
+        dictionary.append("\nCAT  K AE1 T\nHAT  HH AE1 T");
+        actual.clear();
+        CmuDictionaryReader.readWords(phoneTable, new ByteArrayInputStream(dictionary.toString().getBytes("UTF-8")),
+                null, new ListSink(phoneTable, actual));
+        Assert.assertEquals(Arrays.asList("cat 0 AE T", "hat 0 AE T"), actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadInvalidLine() throws IOException {
+        readWords(ByteBuffer.wrap("TOMATO T AH0 M EY1 T OW2\n".getBytes("UTF-8")));
+    }
+
+    private static class ListSink implements CmuDictionaryReader.WordVariantSink {
+        private final PhoneTable phoneTable;
+        private final List<String> wordVariants;
+
+        ListSink(PhoneTable phoneTable, List<String> wordVariants) {
+            this.phoneTable = phoneTable;
+            this.wordVariants = wordVariants;
+        }
+
+        @Override
+        public void onWordVariant(String word, WordVariant wordVariant) {
+            wordVariants.add(word + " " + wordVariant.variantNumber + " "
+                    + TestSyllableParser.toString(phoneTable, wordVariant.lastStressRhymingSyllables));
+        }
     }
 
-    private void testWordSyllables(String word, String expectedLastSyllable, String expectedLastTwoSyllables, String expectedLastThreeSyllables, Map<String, List<WordVariant>> dict) {
+    private void testWordSyllables(String word, String expectedLastSyllable, String expectedLastTwoSyllables, String expectedLastThreeSyllables, PhoneTable phoneTable, Map<String, List<WordVariant>> dict) {
         List<WordVariant> wordVariants = dict.get(word);
         Assert.assertNotNull(wordVariants);
         Assert.assertTrue(wordVariants.size() == 1);
         WordVariant wordVariant = wordVariants.get(0);
-        Assert.assertEquals("Last syllable differs " + word, expectedLastSyllable, wordVariant.lastRhymingSyllable);
-        Assert.assertEquals("Last two syllables differ " + word, expectedLastTwoSyllables, wordVariant.lastTwoRhymingSyllables);
-        Assert.assertEquals("Last three syllables differ " + word, expectedLastThreeSyllables, wordVariant.lastThreeRhymingSyllables);
+        Assert.assertEquals("Last syllable differs " + word, expectedLastSyllable, TestSyllableParser.toString(phoneTable, wordVariant.lastRhymingSyllable));
+        Assert.assertEquals("Last two syllables differ " + word, expectedLastTwoSyllables, TestSyllableParser.toString(phoneTable, wordVariant.lastTwoRhymingSyllables));
+        Assert.assertEquals("Last three syllables differ " + word, expectedLastThreeSyllables, TestSyllableParser.toString(phoneTable, wordVariant.lastThreeRhymingSyllables));
     }
 
 }
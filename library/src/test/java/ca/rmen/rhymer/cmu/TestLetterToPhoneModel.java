@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Carmen Alvarez
+ *
+ * This file is part of Rhymer.
+ *
+ * Rhymer is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Rhymer is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Rhymer.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ca.rmen.rhymer.cmu;
+
+
+import ca.rmen.rhymer.MemoryRhymer;
+import ca.rmen.rhymer.PhoneTable;
+import ca.rmen.rhymer.RhymeResult;
+import ca.rmen.rhymer.WordVariant;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestLetterToPhoneModel {
+
+    /**
+     * The guessed pronunciations of words of the dictionary should have the same rhymes as their pronunciations.
+     */
+    @Test
+    public void testGuessKnownWords() throws IOException {
+        LetterToPhoneModel model = CmuDictionary.loadLetterToPhoneModel();
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        for (String word : Arrays.asList("cat", "puppy", "telephone", "recuperate", "station")) {
+            WordVariant expected = rhymer.getWordVariants(word).get(0);
+            WordVariant guessed = model.guessWordVariants(word).get(0);
+            Assert.assertEquals(word, expected.lastStressRhymingSyllables, guessed.lastStressRhymingSyllables);
+            Assert.assertEquals(word, expected.lastRhymingSyllable, guessed.lastRhymingSyllable);
+        }
+        Assert.assertEquals("K AE1 T", model.guessPronunciation("cat"));
+    }
+
+    /**
+     * A model read back from a file should guess the same pronunciations as the trained model, and the word variants
+     * should have the keys of these pronunciations.
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        LetterToPhoneModel model = CmuDictionary.trainLetterToPhoneModel();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        model.write(os);
+        PhoneTable phoneTable = new PhoneTable(TestCmuDictionaryReader.readPhones());
+        LetterToPhoneModel readModel = LetterToPhoneModel.read(phoneTable, new ByteArrayInputStream(os.toByteArray()));
+        Assert.assertEquals(model.size(), readModel.size());
+        SyllableParser syllableParser = new SyllableParser(phoneTable);
+        for (String word : Arrays.asList("cat", "yeeted", "box", "rhythm", "xylophone", "grrr", "o'clock", "zzyzx")) {
+            String pronunciation = model.guessPronunciation(word);
+            Assert.assertEquals(word, pronunciation, readModel.guessPronunciation(word));
+            WordVariant expected = syllableParser.parseWordVariant(0, pronunciation, 0, pronunciation.length());
+            WordVariant guessed = readModel.guessWordVariants(word).get(0);
+            Assert.assertEquals(word, expected.lastStressRhymingSyllables, guessed.lastStressRhymingSyllables);
+            Assert.assertEquals(word, expected.lastRhymingSyllable, guessed.lastRhymingSyllable);
+            Assert.assertEquals(word, expected.lastTwoRhymingSyllables, guessed.lastTwoRhymingSyllables);
+            Assert.assertEquals(word, expected.lastThreeRhymingSyllables, guessed.lastThreeRhymingSyllables);
+        }
+        Assert.assertNull(readModel.guessWordVariants(""));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidModel() throws IOException {
+        LetterToPhoneModel.read(new PhoneTable(TestCmuDictionaryReader.readPhones()),
+                new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    /**
+     * With the model, we should find rhymes for words which aren't in the dictionary.
+     */
+    @Test
+    public void testRhymesOfUnknownWords() throws IOException {
+        MemoryRhymer rhymer = (MemoryRhymer) CmuDictionary.loadRhymer();
+        Assert.assertTrue(rhymer.getRhymingWords("yeeted").isEmpty());
+        rhymer.setPronunciationGuesser(CmuDictionary.loadLetterToPhoneModel());
+        List<RhymeResult> results = rhymer.getRhymingWords("yeeted");
+        Assert.assertEquals(1, results.size());
+        Assert.assertTrue(Arrays.asList(results.get(0).strictRhymes).contains("greeted"));
+        Assert.assertTrue(rhymer.getRhymingWords("").isEmpty());
+    }
+}
@@ -20,13 +20,13 @@
 package ca.rmen.rhymer.cmu;
 
 
-import ca.rmen.rhymer.PhoneType;
+import ca.rmen.rhymer.PhoneTable;
+import ca.rmen.rhymer.RhymeKey;
 import ca.rmen.rhymer.WordVariant;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -37,10 +37,8 @@ public class TestSyllableParser {
      */
     @Test
     public void testAllSyllables() throws IOException {
-        Map<String, PhoneType> phones = TestCmuDictionaryReader.readPhones();
         Map<String, List<WordVariant>> words = TestCmuDictionaryReader.readWords();
         Assert.assertNotNull(words);
-        SyllableParser syllableParser = new SyllableParser(phones);
         for (String word : words.keySet()) {
             List<WordVariant> wordVariants = words.get(word);
             for(WordVariant wordVariant : wordVariants) {
@@ -54,42 +52,68 @@ public class TestSyllableParser {
      */
     @Test
     public void testSyllables() throws IOException {
-        Map<String, PhoneType> symbolMap = TestCmuDictionaryReader.readPhones();
-        SyllableParser syllableParser = new SyllableParser(symbolMap);
+        PhoneTable phoneTable = new PhoneTable(TestCmuDictionaryReader.readPhones());
+        SyllableParser syllableParser = new SyllableParser(phoneTable);
         // ASAT: AE1 Z AE0 T
-        testSyllableExtraction(syllableParser, new String[]{"AE1", "Z", "AE0", "T"}, new String[]{"AEZ", "AET"});
+        testSyllableExtraction(syllableParser, phoneTable, "AE1 Z AE0 T", "AE T", "AE Z AE T", null);
         // CAT:  K AE1 T
-        testSyllableExtraction(syllableParser, new String[]{"K", "AE1", "T"}, new String[]{"AET"});
+        testSyllableExtraction(syllableParser, phoneTable, "K AE1 T", "AE T", null, null);
         // KITCAT:  K IH1 T K AE2 T
-        testSyllableExtraction(syllableParser, new String[]{"K", "IH1", "T", "AE2", "T"}, new String[]{"IHT", "AET"});
+        testSyllableExtraction(syllableParser, phoneTable, "K IH1 T K AE2 T", "AE T", "IH T K AE T", null);
         // GRAPH  G R AE1 F
-        testSyllableExtraction(syllableParser, new String[]{"G", "R", "AE1", "F"}, new String[]{"AEF"});
+        testSyllableExtraction(syllableParser, phoneTable, "G R AE1 F", "AE F", null, null);
         // RECUPERATE  R IH0 K UW1 P ER0 EY2 T
-        testSyllableExtraction(syllableParser, new String[]{"R", "IH0", "K", "UW1", "P", "ER0", "EY2", "T"}, new String[]{"IHK", "UWP", "ER", "EYT"});
+        testSyllableExtraction(syllableParser, phoneTable, "R IH0 K UW1 P ER0 EY2 T", "EY T", "ER EY T", "UW P ER EY T");
         // REDECORATE  R IY0 D EH1 K ER0 EY2 T
-        testSyllableExtraction(syllableParser, new String[]{"R", "IH0", "D", "EH1", "K", "ER0", "EY2", "T"}, new String[]{"IHD", "EHK", "ER", "EYT"});
+        testSyllableExtraction(syllableParser, phoneTable, "R IY0 D EH1 K ER0 EY2 T", "EY T", "ER EY T", "EH K ER EY T");
         // TELEMEDICINE T EH2 L IH0 M EH1 D IH0 S AH0 N
-        testStressSyllableExtraction(syllableParser, new String[]{"T", "EH2", "L", "IH0", "M", "EH1", "D", "IH0", "S", "AH0", "N"}, "EHDIHSAHN");
+        testStressSyllableExtraction(syllableParser, phoneTable, "T EH2 L IH0 M EH1 D IH0 S AH0 N", "EH D IH S AH N");
         // ABSTRACTION  AE0 B S T R AE1 K SH AH0 N
-        testStressSyllableExtraction(syllableParser, new String[]{"AE0", "B", "S", "T", "R", "AE1", "K", "SH", "AH0", "N"}, "AEKSHAHN");
+        testStressSyllableExtraction(syllableParser, phoneTable, "AE0 B S T R AE1 K SH AH0 N", "AE K SH AH N");
         // HI  HH AY1
-        testStressSyllableExtraction(syllableParser, new String[]{"HH", "AY1"}, "AY");
+        testStressSyllableExtraction(syllableParser, phoneTable, "HH AY1", "AY");
         // OH  OW1
-        testStressSyllableExtraction(syllableParser, new String[]{"OW1"}, "OW");
+        testStressSyllableExtraction(syllableParser, phoneTable, "OW1", "OW");
     }
 
-    private void testSyllableExtraction(SyllableParser syllableParser, String[] symbols, String[] expectedSyllables) {
-        String[] actualSyllables = syllableParser.extractRhymingSyllables(symbols);
-        Assert.assertNotNull(actualSyllables);
-        Assert.assertArrayEquals("The symbols " + Arrays.toString(symbols) + " were split into syllables " + Arrays.toString(actualSyllables)
-                + " instead of " + Arrays.toString(expectedSyllables), expectedSyllables, actualSyllables);
+    /**
+     * Only the given range of the line should be parsed.
+     */
+    @Test
+    public void testPronunciationRange() throws IOException {
+        PhoneTable phoneTable = new PhoneTable(TestCmuDictionaryReader.readPhones());
+        SyllableParser syllableParser = new SyllableParser(phoneTable);
+        String line = "CATS(1)  K AE1 T S  # comment";
+        WordVariant wordVariant = syllableParser.parseWordVariant(1, line, 9, 18);
+        Assert.assertEquals(1, wordVariant.variantNumber);
+        Assert.assertEquals("AE T S", toString(phoneTable, wordVariant.lastStressRhymingSyllables));
+        Assert.assertEquals("AE T S", toString(phoneTable, wordVariant.lastRhymingSyllable));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPhone() throws IOException {
+        SyllableParser syllableParser = new SyllableParser(new PhoneTable(TestCmuDictionaryReader.readPhones()));
+        syllableParser.parseWordVariant(0, "K AE1 XX", 0, 8);
+    }
+
+    private void testSyllableExtraction(SyllableParser syllableParser, PhoneTable phoneTable, String symbols,
+                                        String expectedLastSyllable, String expectedLastTwoSyllables, String expectedLastThreeSyllables) {
+        WordVariant wordVariant = syllableParser.parseWordVariant(0, symbols, 0, symbols.length());
+        String message = "The symbols " + symbols + " were split incorrectly";
+        Assert.assertEquals(message, expectedLastSyllable, toString(phoneTable, wordVariant.lastRhymingSyllable));
+        Assert.assertEquals(message, expectedLastTwoSyllables, toString(phoneTable, wordVariant.lastTwoRhymingSyllables));
+        Assert.assertEquals(message, expectedLastThreeSyllables, toString(phoneTable, wordVariant.lastThreeRhymingSyllables));
     }
 
-    private void testStressSyllableExtraction(SyllableParser syllableParser, String[] symbols, String expectedSyllables) {
-        String actualSyllables = syllableParser.extractStressRhymingSyllables(symbols);
+    private void testStressSyllableExtraction(SyllableParser syllableParser, PhoneTable phoneTable, String symbols, String expectedSyllables) {
+        String actualSyllables = toString(phoneTable, syllableParser.parseWordVariant(0, symbols, 0, symbols.length()).lastStressRhymingSyllables);
         Assert.assertNotNull(actualSyllables);
-        Assert.assertEquals("The symbols " + Arrays.toString(symbols) + " were split into syllables " + actualSyllables
+        Assert.assertEquals("The symbols " + symbols + " were split into syllables " + actualSyllables
                 + " instead of " + expectedSyllables, expectedSyllables, actualSyllables);
     }
 
+    static String toString(PhoneTable phoneTable, RhymeKey key) {
+        return key == null ? null : phoneTable.toString(key);
+    }
+
 }